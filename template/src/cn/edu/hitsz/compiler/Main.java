@@ -7,6 +7,7 @@ import cn.edu.hitsz.compiler.parser.IRGenerator;
 import cn.edu.hitsz.compiler.parser.ProductionCollector;
 import cn.edu.hitsz.compiler.parser.SemanticAnalyzer;
 import cn.edu.hitsz.compiler.parser.SyntaxAnalyzer;
+import cn.edu.hitsz.compiler.parser.table.DenseLRTable;
 import cn.edu.hitsz.compiler.parser.table.GrammarInfo;
 import cn.edu.hitsz.compiler.parser.table.TableLoader;
 import cn.edu.hitsz.compiler.symtab.SymbolTable;
@@ -29,7 +30,7 @@ public class Main {
         lexer.loadFile(FilePathConfig.SRC_CODE_PATH);
         lexer.run();
         lexer.dumpTokens(FilePathConfig.TOKEN_PATH);
-        final var tokens = lexer.getTokens();
+        final var tokens = lexer.getTokenBuffer();
         symbolTable.dumpTable(FilePathConfig.OLD_SYMBOL_TABLE);
 
         // 读取第三方程序构造的 LR 分析表
@@ -45,7 +46,16 @@ public class Main {
         // 加载 LR 分析驱动程序
         final var parser = new SyntaxAnalyzer(symbolTable);
         parser.loadTokens(tokens);
-        parser.loadLRTable(lrTable);
+        // // 或以流式方式读取源代码, 由驱动程序按需拉取词法单元, 此时词法分析部分只需构造 lexer 即可
+        // parser.loadTokens(lexer.streamTokens(FilePathConfig.SRC_CODE_PATH));
+        // 将分析表编译为稠密的 int 数组后再交给驱动程序
+        parser.loadLRTable(DenseLRTable.compile(lrTable));
+        // // 或预先用 BinaryLRTable.write(lrTable, FilePathConfig.LR1_TABLE_BINARY_PATH) 将分析表转换为二进制文件,
+        // // 之后直接映射加载, 不必再读取 CSV
+        // parser.loadLRTable(BinaryLRTable.load(FilePathConfig.LR1_TABLE_BINARY_PATH));
+        // // 或预先用 new ParserSourceGenerator(lrTable).writeTo(FilePathConfig.GENERATED_PARSER_PATH,
+        // // "cn.edu.hitsz.compiler.parser", "GeneratedParser") 生成直接编码的分析程序, 重新编译后以
+        // // new GeneratedParser(symbolTable) 代替 SyntaxAnalyzer, 不再需要加载分析表, 其余用法相同
 
         // 加入生成规约列表的 Observer
         final var productionCollector = new ProductionCollector(GrammarInfo.getBeginProduction());
@@ -59,7 +69,16 @@ public class Main {
         final var irGenerator = new IRGenerator();
         parser.registerObserver(irGenerator);
 
+        // // 还可以注册一个 ParseEventRecorder, 分析后以 recorder.getLog().write(path) 保存动作序列;
+        // // 之后重新实验语义分析与 IR 生成时, 用 ParseEventLog.load(path) 读入并交给 ParseEventReplayer 重放,
+        // // 不必再进行词法分析与语法分析
+
+        // // 或用 ParallelFrontEnd 按语句分段并行地完成语法分析, 语义分析与 IR 生成, 结果与下面的顺序执行相同:
+        // // final var frontEnd = new ParallelFrontEnd(symbolTable, DenseLRTable.compile(lrTable));
+        // // frontEnd.run(tokens), 之后以 frontEnd.dumpReductions 与 frontEnd.dumpIR 代替两个 Observer 的输出
+
         // 执行语法解析并在解析过程中依次调用各 Observer
+        // // 可以先调用 parser.setBypassUnitReductions(true), 让 A -> B, E -> A 这样的单产生式规约一步完成
         parser.run();
 
         // 各 Observer 输出结果
@@ -24,6 +24,33 @@ public class IRVariable implements IRValue {
         return new IRVariable("$" + count++);
     }
 
+    /**
+     * @param number 临时变量的编号
+     * @return 具有给定编号的临时变量, 不占用 {@link #temp()} 的编号
+     */
+    public static IRVariable temp(int number) {
+        return new IRVariable("$" + number);
+    }
+
+    /**
+     * 预留一段连续的临时变量编号, 之后 {@link #temp()} 从这段编号之后继续分配
+     *
+     * @param amount 预留的个数
+     * @return 预留的第一个编号
+     */
+    public static int reserveTemps(int amount) {
+        final var first = count;
+        count += amount;
+        return first;
+    }
+
+    /**
+     * @return 临时变量的编号, 非临时变量为 -1
+     */
+    public int getTempNumber() {
+        return isTemp() ? Integer.parseInt(name, 1, name.length(), 10) : -1;
+    }
+
     @Override
     /**
      * 为了代码简洁，在IRvalue中加入了抽象方法接口，但是IRvariable没有对应属性，因此实现一个空方法即可
@@ -0,0 +1,366 @@
+package cn.edu.hitsz.compiler.lexer;
+
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+import cn.edu.hitsz.compiler.utils.FileUtils;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 增量词法分析器
+ * <br>
+ * 持有源代码文本及其词法单元序列. 每次编辑 (在某个位置删去一段文本并插入新的文本) 之后, 不重新分析整个文件,
+ * 而是从编辑位置之前最近的语句边界 (分号) 开始重新识别, 直到新识别出的词法单元与编辑区域之后的旧词法单元重新对齐为止.
+ * <br>
+ * 由于自动机在每个词法单元开始时都回到开始状态, 一旦新的词法单元在编辑区域之后, 且其开始位置恰好是某个旧词法单元
+ * (平移编辑长度差之后) 的开始位置, 其后的词法单元就必然与旧的相同, 只需平移位置.
+ * <br>
+ * 符号表同样增量维护: 每个标识符记录其出现次数, 第一次出现时加入符号表, 最后一次出现被删去时从符号表中删除.
+ * <br>
+ * 文本与词法单元序列都以间隙缓冲区的形式存放, 间隙停在上一次编辑处. 间隙之后的词法单元记录的是相对文本末尾的位置,
+ * 编辑改变文本长度时无需逐个平移. 因此一次编辑的代价只与重新识别的范围以及与上一次编辑之间的距离有关, 与文件长度无关.
+ */
+public class IncrementalLexer {
+    /**
+     * 一次编辑引起的词法单元变化: 旧序列中 [begin, begin + removedCount) 的词法单元被替换为新序列中
+     * [begin, begin + insertedCount) 的词法单元, 其余词法单元不变 (位置可能被平移)
+     *
+     * @param begin         第一个发生变化的词法单元的下标
+     * @param removedCount  被替换掉的旧词法单元数
+     * @param insertedCount 新识别出的词法单元数
+     */
+    public record Change(int begin, int removedCount, int insertedCount) {
+    }
+
+    private final SymbolTable symbolTable;
+    private final TokenKind semicolon;
+    private final TokenKind identifier;
+
+    private final GapText text = new GapText();
+
+    // 不含 EOF 的词法单元序列, 以及每个词法单元在文本中的开始与结束位置, 以 [gapBegin, gapEnd) 为间隙.
+    // 间隙之前的位置是绝对位置, 间隙之后的位置是减去文本长度后的 (非正的) 相对位置
+    private Token[] tokens = new Token[16];
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int gapBegin = 0;
+    private int gapEnd = 16;
+
+    // 每个标识符在当前文本中出现的次数
+    private final Map<String, Integer> identifierCounts = new HashMap<>();
+
+    public IncrementalLexer(SymbolTable symbolTable) {
+        this.symbolTable = symbolTable;
+        this.semicolon = TokenKind.fromString("Semicolon");
+        this.identifier = TokenKind.fromString("id");
+    }
+
+    /**
+     * 从给予的路径中读取文件内容并完整地进行一次词法分析
+     *
+     * @param path 路径
+     */
+    public void loadFile(String path) {
+        load(FileUtils.readFile(path));
+    }
+
+    /**
+     * 以给定的文本替换当前文本, 并完整地进行一次词法分析
+     *
+     * @param source 源代码
+     */
+    public void load(String source) {
+        applyEdit(0, text.length(), source);
+    }
+
+    /**
+     * 对文本进行一次编辑, 并增量地更新词法单元序列与符号表
+     *
+     * @param offset        编辑开始的位置
+     * @param removedLength 删去的字符数
+     * @param insertedText  插入的文本
+     * @return 词法单元序列的变化范围
+     */
+    public Change applyEdit(int offset, int removedLength, String insertedText) {
+        if (offset < 0 || removedLength < 0 || offset + removedLength > text.length()) {
+            throw new RuntimeException("Illegal edit [%d, %d) on text of length %d"
+                .formatted(offset, offset + removedLength, text.length()));
+        }
+
+        final var editEnd = offset + removedLength;
+        final var delta = insertedText.length() - removedLength;
+
+        // 从编辑位置之前最近的分号之后开始重新识别, 分号只有一个字符, 不会与之后的字符合并.
+        // 结束位置是递增的, 先二分找出所有结束于编辑位置之前的词法单元, 再向前找到最近的分号
+        var low = 0;
+        var high = size();
+        while (low < high) {
+            final var middle = (low + high) >>> 1;
+            if (getEnd(middle) <= offset) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        var first = low;
+        while (first > 0 && tokenAt(first - 1).getKind() != semicolon) {
+            first--;
+        }
+        final var rescanBegin = first == 0 ? 0 : getEnd(first - 1);
+
+        // 此后所有可能变化的词法单元都在间隙之后, 记录的相对位置随文本长度一起平移, getStart 得到的已是平移后的位置
+        moveGap(first);
+        text.replace(offset, editEnd, insertedText);
+        final var oldSize = size();
+
+        // 重新识别, 直到与编辑区域之后的旧词法单元对齐
+        final var newTokens = new ArrayList<Token>();
+        var newStarts = new int[16];
+        var newEnds = new int[16];
+        var resync = first;
+        var synced = false;
+        final var scanner = new LexicalScanner(text, rescanBegin, text.length());
+        while (scanner.advance()) {
+            final var begin = scanner.getBegin();
+            if (begin >= offset + insertedText.length()) {
+                while (resync < oldSize && (getStart(resync) - delta < editEnd || getStart(resync) < begin)) {
+                    resync++;
+                }
+                if (resync < oldSize && getStart(resync) == begin) {
+                    synced = true;
+                    break;
+                }
+            }
+
+            if (newTokens.size() == newStarts.length) {
+                newStarts = Arrays.copyOf(newStarts, newStarts.length * 2);
+                newEnds = Arrays.copyOf(newEnds, newEnds.length * 2);
+            }
+            newStarts[newTokens.size()] = begin;
+            newEnds[newTokens.size()] = scanner.getEnd();
+            newTokens.add(makeToken(scanner));
+        }
+        if (!synced) {
+            // 扫描到文本末尾也没有对齐, 旧序列中剩余的词法单元全部被替换
+            resync = oldSize;
+        }
+
+        // 先登记新出现的标识符, 再注销被替换掉的, 避免仍在使用的标识符被暂时移出符号表而丢失类型
+        for (final var token : newTokens) {
+            if (token.getKind() == identifier) {
+                retain(token.getText());
+            }
+        }
+        for (int i = first; i < resync; i++) {
+            final var token = tokenAt(i);
+            if (token.getKind() == identifier) {
+                release(token.getText());
+            }
+        }
+
+        replace(resync - first, newTokens, newStarts, newEnds);
+        return new Change(first, resync - first, newTokens.size());
+    }
+
+    /**
+     * @return 当前的源代码文本
+     */
+    public String getText() {
+        return text.toString();
+    }
+
+    /**
+     * @return 当前的词法单元序列, 以 EOF 结尾. 该序列是只读的视图, 会随之后的编辑而变化
+     */
+    public List<Token> getTokens() {
+        return new AbstractList<>() {
+            @Override
+            public Token get(int index) {
+                return index == IncrementalLexer.this.size() ? Token.eof() : tokenAt(index);
+            }
+
+            @Override
+            public int size() {
+                return IncrementalLexer.this.size() + 1;
+            }
+        };
+    }
+
+    /**
+     * @param index 词法单元下标
+     * @return 该词法单元在文本中的开始位置
+     */
+    public int getStart(int index) {
+        return index < gapBegin ? starts[index] : starts[index + gapEnd - gapBegin] + text.length();
+    }
+
+    /**
+     * @param index 词法单元下标
+     * @return 该词法单元在文本中的结束位置 (不含)
+     */
+    public int getEnd(int index) {
+        return index < gapBegin ? ends[index] : ends[index + gapEnd - gapBegin] + text.length();
+    }
+
+    private int size() {
+        return tokens.length - (gapEnd - gapBegin);
+    }
+
+    private Token tokenAt(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return tokens[index < gapBegin ? index : index + gapEnd - gapBegin];
+    }
+
+    private static Token makeToken(LexicalScanner scanner) {
+        return scanner.hasText()
+            ? Token.normal(scanner.getKind(), scanner.getLexeme())
+            : Token.simple(scanner.getKind());
+    }
+
+    /**
+     * 将间隙移动到下标 index 处, 跨过间隙的词法单元在绝对位置与相对位置之间转换
+     */
+    private void moveGap(int index) {
+        final var length = text.length();
+        while (gapBegin > index) {
+            gapBegin--;
+            gapEnd--;
+            tokens[gapEnd] = tokens[gapBegin];
+            starts[gapEnd] = starts[gapBegin] - length;
+            ends[gapEnd] = ends[gapBegin] - length;
+            if (gapBegin != gapEnd) {
+                tokens[gapBegin] = null;
+            }
+        }
+        while (gapBegin < index) {
+            tokens[gapBegin] = tokens[gapEnd];
+            starts[gapBegin] = starts[gapEnd] + length;
+            ends[gapBegin] = ends[gapEnd] + length;
+            if (gapBegin != gapEnd) {
+                tokens[gapEnd] = null;
+            }
+            gapBegin++;
+            gapEnd++;
+        }
+    }
+
+    /**
+     * 用新识别出的词法单元替换紧跟在间隙之后的 removedCount 个旧词法单元, 新词法单元的位置是编辑后文本中的绝对位置
+     */
+    private void replace(int removedCount, List<Token> newTokens, int[] newStarts, int[] newEnds) {
+        for (int i = 0; i < removedCount; i++) {
+            tokens[gapEnd++] = null;
+        }
+
+        final var count = newTokens.size();
+        if (gapEnd - gapBegin < count) {
+            final var tail = tokens.length - gapEnd;
+            final var capacity = Math.max(tokens.length * 2, gapBegin + count + tail);
+            final var resizedTokens = new Token[capacity];
+            final var resizedStarts = new int[capacity];
+            final var resizedEnds = new int[capacity];
+            System.arraycopy(tokens, 0, resizedTokens, 0, gapBegin);
+            System.arraycopy(starts, 0, resizedStarts, 0, gapBegin);
+            System.arraycopy(ends, 0, resizedEnds, 0, gapBegin);
+            System.arraycopy(tokens, gapEnd, resizedTokens, capacity - tail, tail);
+            System.arraycopy(starts, gapEnd, resizedStarts, capacity - tail, tail);
+            System.arraycopy(ends, gapEnd, resizedEnds, capacity - tail, tail);
+            tokens = resizedTokens;
+            starts = resizedStarts;
+            ends = resizedEnds;
+            gapEnd = capacity - tail;
+        }
+
+        for (int i = 0; i < count; i++) {
+            tokens[gapBegin] = newTokens.get(i);
+            starts[gapBegin] = newStarts[i];
+            ends[gapBegin] = newEnds[i];
+            gapBegin++;
+        }
+    }
+
+    private void retain(String identifier) {
+        if (identifierCounts.merge(identifier, 1, Integer::sum) == 1 && !symbolTable.has(identifier)) {
+            symbolTable.add(identifier);
+        }
+    }
+
+    private void release(String identifier) {
+        final var count = identifierCounts.merge(identifier, -1, Integer::sum);
+        if (count == 0) {
+            identifierCounts.remove(identifier);
+            if (symbolTable.has(identifier)) {
+                symbolTable.remove(identifier);
+            }
+        }
+    }
+
+    /**
+     * 以间隙缓冲区存放的文本, 间隙停在上一次编辑处, 相邻的编辑只需移动两次编辑之间的字符
+     */
+    private static final class GapText implements CharSequence {
+        private char[] buffer = new char[64];
+        private int gapBegin = 0;
+        private int gapEnd = 64;
+
+        void replace(int begin, int end, String inserted) {
+            if (begin < gapBegin) {
+                System.arraycopy(buffer, begin, buffer, begin + gapEnd - gapBegin, gapBegin - begin);
+                gapEnd -= gapBegin - begin;
+                gapBegin = begin;
+            } else if (begin > gapBegin) {
+                System.arraycopy(buffer, gapEnd, buffer, gapBegin, begin - gapBegin);
+                gapEnd += begin - gapBegin;
+                gapBegin = begin;
+            }
+            gapEnd += end - begin;
+
+            final var count = inserted.length();
+            if (gapEnd - gapBegin < count) {
+                final var tail = buffer.length - gapEnd;
+                final var capacity = Math.max(buffer.length * 2, gapBegin + count + tail);
+                final var resized = new char[capacity];
+                System.arraycopy(buffer, 0, resized, 0, gapBegin);
+                System.arraycopy(buffer, gapEnd, resized, capacity - tail, tail);
+                buffer = resized;
+                gapEnd = capacity - tail;
+            }
+            inserted.getChars(0, count, buffer, gapBegin);
+            gapBegin += count;
+        }
+
+        @Override
+        public int length() {
+            return buffer.length - (gapEnd - gapBegin);
+        }
+
+        @Override
+        public char charAt(int index) {
+            return buffer[index < gapBegin ? index : index + gapEnd - gapBegin];
+        }
+
+        @Override
+        public CharSequence subSequence(int begin, int end) {
+            if (end <= gapBegin) {
+                return new String(buffer, begin, end - begin);
+            }
+            if (begin >= gapBegin) {
+                return new String(buffer, begin + gapEnd - gapBegin, end - begin);
+            }
+            return new StringBuilder(end - begin)
+                .append(buffer, begin, gapBegin - begin)
+                .append(buffer, gapEnd, end - gapBegin);
+        }
+
+        @Override
+        public String toString() {
+            return subSequence(0, length()).toString();
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package cn.edu.hitsz.compiler.lexer;
+
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Stream;
+
+/**
+ * 词法分析器的并发压力测试: 在线程池中同时分析数百个源文件, 检查每个结果
+ * <br>
+ * 每个文件由 {@link LexerWorkloads#randomSource} 生成, 同时得到期望的词法单元与符号表. 每个文件都由
+ * {@link LexicalAnalyzer} (一次读入), {@link TokenStream} (流式) 与 {@link MappedLexicalAnalyzer} 三种方式分析,
+ * 每种方式使用自己的分析器与符号表.
+ * <ul>
+ *     <li>并发: 所有文件作为任务提交到线程池, 在同一时刻放行, 各自输出词法单元并导出符号表</li>
+ *     <li>顺序: 之后在主线程上逐个重新分析</li>
+ * </ul>
+ * 每个文件的并发结果都必须与顺序结果以及期望结果完全相同. 并发阶段先于任何顺序分析运行,
+ * 因此自动机中延迟构造的共享数据也是在竞争下第一次构造的. 若词法分析重新引入了共享的可变状态, 这里的结果就会互相串扰.
+ * <br>
+ * 在 template 目录下运行 (需要读取码点文件), 有不一致时抛出异常:
+ * <pre>{@code
+ * java cn.edu.hitsz.compiler.lexer.LexerStressCheck [文件数, 默认 400] [线程数, 默认 16]
+ * }</pre>
+ */
+public final class LexerStressCheck {
+    private LexerStressCheck() {
+    }
+
+    /**
+     * 一个文件以一种方式分析的结果
+     *
+     * @param tokens  词法单元, 格式与 dumpTokens 的每一行相同
+     * @param symbols 导出的符号表
+     */
+    private record Result(List<String> tokens, List<String> symbols) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        final var fileCount = args.length > 0 ? Integer.parseInt(args[0]) : 400;
+        final var threads = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+
+        TokenKind.loadTokenKinds();
+        final var directory = Files.createTempDirectory("lexer-stress");
+        try {
+            final var sources = new ArrayList<LexerWorkloads.Source>(fileCount);
+            final var paths = new ArrayList<Path>(fileCount);
+            for (int i = 0; i < fileCount; i++) {
+                // 文件大小各不相同, 使各线程的进度互相错开
+                final var source = LexerWorkloads.randomSource(i, 500 + (i % 13) * 400);
+                final var path = directory.resolve(i + ".txt");
+                Files.writeString(path, source.text());
+                sources.add(source);
+                paths.add(path);
+            }
+
+            final var pool = new ForkJoinPool(threads);
+            final var start = new CountDownLatch(1);
+            final var tasks = new ArrayList<ForkJoinTask<Result[]>>(fileCount);
+            for (final var path : paths) {
+                tasks.add(pool.submit(() -> {
+                    start.await();
+                    return lexAll(path);
+                }));
+            }
+            start.countDown();
+            final var concurrent = new ArrayList<Result[]>(fileCount);
+            for (final var task : tasks) {
+                concurrent.add(task.join());
+            }
+            pool.shutdown();
+
+            var mismatches = 0;
+            for (int i = 0; i < fileCount; i++) {
+                final var expected = expectedResult(sources.get(i));
+                final var sequential = lexAll(paths.get(i));
+                for (int way = 0; way < sequential.length; way++) {
+                    if (!expected.equals(sequential[way]) || !expected.equals(concurrent.get(i)[way])) {
+                        mismatches++;
+                        System.out.printf("file %d, lexer %d: sequential %s, concurrent %s%n", i, way,
+                            expected.equals(sequential[way]) ? "ok" : "WRONG",
+                            expected.equals(concurrent.get(i)[way]) ? "ok" : "WRONG");
+                    }
+                }
+            }
+
+            final var tokenCount = sources.stream().mapToInt(source -> source.tokens().size()).sum();
+            System.out.printf("%d files, %d tokens, 3 lexers, %d threads: %d mismatches%n",
+                fileCount, tokenCount, threads, mismatches);
+            if (mismatches != 0) {
+                throw new RuntimeException("Concurrent lexing differs from the expected output");
+            }
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    /**
+     * 以三种方式分别分析同一个文件
+     */
+    private static Result[] lexAll(Path path) throws IOException {
+        final var file = path.toString();
+
+        final var symbolTable = new SymbolTable();
+        final var lexer = new LexicalAnalyzer(symbolTable);
+        lexer.loadFile(file);
+        lexer.run();
+        final var whole = new Result(toStrings(lexer.getTokens()), dumpSymbols(symbolTable, path, "whole"));
+
+        final var streamSymbolTable = new SymbolTable();
+        final var stream = new LexicalAnalyzer(streamSymbolTable).streamTokens(file);
+        final var streamTokens = new ArrayList<String>();
+        stream.forEachRemaining(token -> streamTokens.add(token.toString()));
+        final var streamed = new Result(streamTokens, dumpSymbols(streamSymbolTable, path, "stream"));
+
+        final var mappedSymbolTable = new SymbolTable();
+        final var mappedLexer = new MappedLexicalAnalyzer(mappedSymbolTable);
+        mappedLexer.loadFile(file);
+        mappedLexer.run();
+        final var mapped = new Result(toStrings(mappedLexer.getTokens()), dumpSymbols(mappedSymbolTable, path, "mapped"));
+
+        return new Result[]{whole, streamed, mapped};
+    }
+
+    private static Result expectedResult(LexerWorkloads.Source source) {
+        // 与 SymbolTable.dumpTable 的格式相同: 按文本排序, 类型尚未确定
+        final var symbols = source.identifiers().stream()
+            .sorted()
+            .map(text -> "(%s, null)".formatted(text))
+            .toList();
+        return new Result(source.tokens(), symbols);
+    }
+
+    private static List<String> toStrings(Iterable<Token> tokens) {
+        final var strings = new ArrayList<String>();
+        for (final var token : tokens) {
+            strings.add(token.toString());
+        }
+        return strings;
+    }
+
+    private static List<String> dumpSymbols(SymbolTable symbolTable, Path source, String suffix) throws IOException {
+        final var path = source.resolveSibling(source.getFileName() + "." + suffix + ".symbols");
+        symbolTable.dumpTable(path.toString());
+        return Files.readAllLines(path);
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (final Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+}
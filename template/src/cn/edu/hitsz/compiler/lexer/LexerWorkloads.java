@@ -0,0 +1,245 @@
+package cn.edu.hitsz.compiler.lexer;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 词法分析的基准测试与压力测试所用的输入生成器
+ * <br>
+ * 所有输入都由种子确定, 同样的参数总是生成同样的文本, 因此各次测量的结果可以相互比较.
+ */
+final class LexerWorkloads {
+    private static final String LOWER = "abcdefghijklmnopqrstuvwxyz";
+    private static final String ALPHANUMERIC = LOWER + "0123456789";
+    private static final String WORD_CHARACTERS = ALPHANUMERIC + "ABCDEFGHIJKLMNOPQRSTUVWXYZ_";
+
+    // 随机源代码中的运算符与界符, 及其对应的 TokenKind 标识符 (':' 与 ';' 都是 Semicolon)
+    private static final String PUNCTUATIONS = "=,;:+-*/()";
+    private static final String[] PUNCTUATION_IDS = {"=", ",", "Semicolon", "Semicolon", "+", "-", "*", "/", "(", ")"};
+
+    // 随机源代码中词法单元之间的间隔, 包括自动机会跳过的非 ASCII 字符与其它字符
+    private static final String[] SEPARATORS = {" ", " ", "  ", "\t", "\n", "\r\n", "    ", "#", "\u4e2d", "\u00e9"};
+
+    /**
+     * 随机生成的源代码及其期望的词法分析结果
+     *
+     * @param text        源代码
+     * @param tokens      期望的词法单元, 格式与 dumpTokens 的每一行相同, 最后为 EOF
+     * @param identifiers 期望加入符号表的标识符, 按第一次出现的顺序排列
+     */
+    record Source(String text, List<String> tokens, List<String> identifiers) {
+    }
+
+    private LexerWorkloads() {
+    }
+
+    /**
+     * 生成形如 input_code.txt 的源代码: 每行一个语句, 词法单元之间以单个空格分隔
+     * <br>
+     * 只使用改写前的自动机也能正确识别的写法, 以便两个自动机的结果可以逐行比较: 没有下划线, 没有空行,
+     * 分号前也留一个空格 (改写前的自动机会吞掉紧跟在多位整数后面的字符).
+     *
+     * @param seed  随机种子
+     * @param count 语句数
+     * @return 源代码
+     */
+    static String statements(long seed, int count) {
+        final var random = new Random(seed);
+        final var text = new StringBuilder(count * 24);
+        for (int i = 0; i < count; i++) {
+            switch (random.nextInt(8)) {
+                case 0 -> text.append("int ").append(name(random));
+                case 1 -> text.append("return ").append(name(random));
+                default -> {
+                    text.append(name(random)).append(" =");
+                    appendExpression(random, text, 1 + random.nextInt(6));
+                }
+            }
+            text.append(" ;\n");
+        }
+        return text.toString();
+    }
+
+    /**
+     * 生成由随机的词法单元与随机的间隔组成的源代码, 同时给出期望的词法单元与标识符
+     * <br>
+     * 源代码不必符合语法, 但覆盖了词法上的各种情形: 以关键字为前缀的标识符, 关键字的前缀, 下划线, 前导零, 超出 int 范围的常数,
+     * 紧挨着的运算符, 制表符与 CRLF, 以及会被跳过的非 ASCII 字符. 相邻的两个由字母或数字组成的词法单元之间总有间隔.
+     * 需要先加载码点文件.
+     *
+     * @param seed       随机种子
+     * @param tokenCount 词法单元数 (不含 EOF)
+     * @return 源代码与期望结果
+     */
+    static Source randomSource(long seed, int tokenCount) {
+        final var random = new Random(seed);
+        final var text = new StringBuilder(tokenCount * 6);
+        final var tokens = new ArrayList<String>(tokenCount + 1);
+        final var identifiers = new LinkedHashSet<String>();
+
+        var previousIsWord = false;
+        for (int i = 0; i < tokenCount; i++) {
+            final var kind = random.nextInt(10);
+            final boolean isWord = kind < 7;
+            if ((previousIsWord && isWord) || random.nextInt(3) == 0) {
+                text.append(SEPARATORS[random.nextInt(SEPARATORS.length)]);
+            }
+            previousIsWord = isWord;
+
+            switch (kind) {
+                case 0 -> {
+                    final var keyword = random.nextBoolean() ? "int" : "return";
+                    text.append(keyword);
+                    tokens.add(Token.simple(keyword).toString());
+                }
+                case 1, 2, 3 -> {
+                    final var name = switch (random.nextInt(6)) {
+                        case 0 -> (random.nextBoolean() ? "int" : "return") + name(random);
+                        case 1 -> random.nextBoolean() ? "in" : "retur";
+                        case 2 -> "_" + name(random);
+                        default -> name(random);
+                    };
+                    text.append(name);
+                    tokens.add(Token.normal("id", name).toString());
+                    identifiers.add(name);
+                }
+                case 4, 5, 6 -> {
+                    final var number = switch (random.nextInt(8)) {
+                        case 0, 1 -> "0" + random.nextInt(1000);
+                        // 超出 int 范围的常数在词法上仍然合法
+                        case 2 -> random.nextBoolean() ? "99999999999" : String.valueOf(random.nextLong() >>> 1);
+                        default -> String.valueOf(random.nextInt());
+                    };
+                    // 负号是单独的词法单元
+                    final var digits = number.startsWith("-") ? number.substring(1) : number;
+                    if (!digits.equals(number)) {
+                        text.append('-');
+                        tokens.add(Token.simple("-").toString());
+                    }
+                    text.append(digits);
+                    tokens.add(Token.normal("IntConst", digits).toString());
+                }
+                default -> {
+                    final var index = random.nextInt(PUNCTUATIONS.length());
+                    text.append(PUNCTUATIONS.charAt(index));
+                    tokens.add(Token.simple(PUNCTUATION_IDS[index]).toString());
+                }
+            }
+        }
+        tokens.add(Token.eof().toString());
+        return new Source(text.toString(), tokens, new ArrayList<>(identifiers));
+    }
+
+    /**
+     * 生成空白与标识符都很长的源代码: 每行形如 {@code a = b + 123;}, 但词法单元之间的空白长达 maxRun 个空格,
+     * 标识符取自 64 个 16 到 47 个字符的名字, 包含大写字母, 数字与下划线
+     *
+     * @param seed   随机种子
+     * @param length 至少生成的字符数
+     * @param maxRun 空白的最大长度
+     * @return 源代码
+     */
+    static String longRuns(long seed, int length, int maxRun) {
+        final var random = new Random(seed);
+        final var names = new String[64];
+        for (int i = 0; i < names.length; i++) {
+            final var nameLength = 16 + random.nextInt(32);
+            final var name = new StringBuilder(nameLength);
+            name.append(LOWER.charAt(random.nextInt(LOWER.length())));
+            while (name.length() < nameLength) {
+                name.append(WORD_CHARACTERS.charAt(random.nextInt(WORD_CHARACTERS.length())));
+            }
+            names[i] = name.toString();
+        }
+
+        final var text = new StringBuilder(length + 256);
+        while (text.length() < length) {
+            text.append(" ".repeat(maxRun / 2 + random.nextInt(maxRun)))
+                .append(names[random.nextInt(names.length)])
+                .append(" ".repeat(1 + random.nextInt(maxRun)))
+                .append('=')
+                .append(" ".repeat(1 + random.nextInt(maxRun)))
+                .append(names[random.nextInt(names.length)])
+                .append(" + ")
+                .append(random.nextInt(1_000_000_000))
+                .append(";\n");
+        }
+        return text.toString();
+    }
+
+    /**
+     * 生成用于比较按字扫描与逐字节扫描的模糊输入
+     * <br>
+     * 由长度随机 (1 到 80) 的空白串, 标识符与整数紧挨着拼接而成, 其间夹杂运算符, 关键字, CRLF 与会被跳过的非 ASCII 字符.
+     * 各串的长度与位置都不对齐 8 字节, 按字扫描的每一种结束情形 (在字中, 在字的边界上, 在文件末尾) 都会出现.
+     *
+     * @param seed   随机种子
+     * @param length 至少生成的字符数
+     * @return 源代码, 不必符合语法
+     */
+    static String fuzz(long seed, int length) {
+        final var random = new Random(seed);
+        final var text = new StringBuilder(length + 128);
+        while (text.length() < length) {
+            final var runLength = 1 + random.nextInt(random.nextBoolean() ? 8 : 80);
+            switch (random.nextInt(8)) {
+                case 0, 1 -> {
+                    for (int i = 0; i < runLength; i++) {
+                        text.append(" \t\n\r".charAt(random.nextInt(4)));
+                    }
+                }
+                case 2, 3 -> {
+                    text.append(random.nextInt(4) == 0 ? '_' : LOWER.charAt(random.nextInt(LOWER.length())));
+                    for (int i = 1; i < runLength; i++) {
+                        text.append(WORD_CHARACTERS.charAt(random.nextInt(WORD_CHARACTERS.length())));
+                    }
+                }
+                case 4 -> {
+                    for (int i = 0; i < runLength; i++) {
+                        text.append((char) ('0' + random.nextInt(10)));
+                    }
+                }
+                case 5 -> text.append(PUNCTUATIONS.charAt(random.nextInt(PUNCTUATIONS.length())));
+                case 6 -> text.append(random.nextBoolean() ? "int" : "return");
+                default -> text.append(SEPARATORS[random.nextInt(SEPARATORS.length)]);
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * @return 1 到 8 个字符的标识符, 以小写字母开头, 不会恰好是关键字
+     */
+    static String name(Random random) {
+        while (true) {
+            final var length = 1 + random.nextInt(8);
+            final var name = new StringBuilder(length);
+            name.append(LOWER.charAt(random.nextInt(LOWER.length())));
+            while (name.length() < length) {
+                name.append(ALPHANUMERIC.charAt(random.nextInt(ALPHANUMERIC.length())));
+            }
+            if (!TokenKind.isAllowed(name.toString())) {
+                return name.toString();
+            }
+        }
+    }
+
+    private static void appendExpression(Random random, StringBuilder text, int operands) {
+        for (int i = 0; i < operands; i++) {
+            if (i > 0) {
+                text.append(' ').append("+-*".charAt(random.nextInt(3)));
+            }
+            if (random.nextInt(5) == 0) {
+                text.append(" (");
+                appendExpression(random, text, 1 + random.nextInt(3));
+                text.append(" )");
+            } else if (random.nextBoolean()) {
+                text.append(' ').append(random.nextInt(100000));
+            } else {
+                text.append(' ').append(name(random));
+            }
+        }
+    }
+}
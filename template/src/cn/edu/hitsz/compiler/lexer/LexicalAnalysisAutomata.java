@@ -1,335 +1,286 @@
 package cn.edu.hitsz.compiler.lexer;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
+/**
+ * 表驱动的词法分析自动机
+ * <br>
+ * 自动机在类加载时被编译为一张稠密的状态转移表 {@code transitions}, 以 "状态 * 字符类数 + 字符类" 为下标.
+ * ASCII 字符先经 {@code charClass} 映射为字符类, 非 ASCII 字符一律归入 {@link #OTHER} 类.
+ * <br>
+ * 关键字不再通过在识别出标识符后查表匹配, 而是直接在自动机中展开为一棵字典树: 关键字的每个前缀都对应一个状态,
+ * 若在关键字中途遇到其它标识符字符, 则转移到普通标识符状态. 每个接受状态直接对应一个 TokenKind.
+ * <br>
+ * 识别采用最长匹配: 从 {@link #START} 出发不断转移, 直到转移到 {@link #DEAD}, 最后到达的接受状态即为词法单元的类型.
+ * 在 {@link #START} 状态下即无法转移的字符 (如空白) 会被直接跳过.
+ * <br>
+ * 该类只持有只读的转移表, 扫描过程中的状态保存在 {@link LexicalScanner} 实例中, 因此可以被多个线程同时使用.
+ */
 public class LexicalAnalysisAutomata {
+    /**
+     * 死状态, 转移表中的默认值, 代表无法继续匹配
+     */
+    public static final int DEAD = 0;
 
-    private static final List<String> keyWordList = new LinkedList<>();
-
-    enum State {
-        // 自动机开始状态
-        start,
-        // 标识符状态
-        letter, idToken, keyWordToken,
-        // Int型状态
-        digit, intToken,
-        // 乘号与立方状态
-        mul, powerToken, mulToken,
-        // 赋值与判断是否相等
-        assign, assignToken, equalToken,
-        // 常量状态
-        leftQuotation, rightQuotation, constToken,
-        // 左括号状态
-        leftParenthesisToken,
-        // 右括号状态
-        rightParenthesisToken,
-        // 分号状态
-        semicolonToken,
-        // 加号
-        addToken,
-        // 减号
-        minusToken,
-        // 除号
-        divToken,
-        // 逗号
-        commaToken
-    }
+    /**
+     * 自动机开始状态
+     */
+    public static final int START = 1;
 
-    // 判断自动机是否进入终止状态的标志变量
-    private static boolean endFlag;
+    /**
+     * 普通标识符状态, 在任意标识符字符上都转移到自身
+     */
+    public static final int IDENTIFIER = 2;
 
-    // 当前状态
-    private static State currentState;
+    /**
+     * 整数状态, 在数字上转移到自身
+     */
+    public static final int INT_CONST = 3;
 
-    // 匹配的关键字
-    private static String currentLetter = "";
+    // 关键字, 如果有新的关键字加入, 则直接在这里加就行了
+    private static final List<String> KEYWORDS = List.of("int", "return");
 
     /**
-     * 状态转换函数
-     * @param cur_word 当前读入的字
-     * @param next_word 当前字的下一个字
+     * 最长的关键字的长度, 更长的标识符字符串一定被识别为普通标识符
      */
-    private static void stateTransition(char cur_word, char next_word) {
+    public static final int MAX_KEYWORD_LENGTH = KEYWORDS.stream().mapToInt(String::length).max().orElse(0);
 
-        switch (currentState) {
-            /*
-              第一列 三个状态
-              start, letter, idToken
-             */
-            case start -> {
-                // 字符状态
-                if (Character.isLetter(cur_word)) {
-                    // 单个字的标识符（单独处理）
-                    if (Character.isDigit(next_word) || Character.isLetter(next_word)) {
-                        currentState = State.letter;
-                        // 关键字判断
-                        currentLetter += cur_word;
-                    }
-                    else {
-                        currentState = State.idToken;
-                        endFlag = true;
-                    }
-                }
-                // 数字状态
-                else if (Character.isDigit(cur_word)) {
-                    // 如果下一个还是数字，则说明数字没有读取完
-                    if (Character.isDigit(next_word)) {
-                        currentState = State.digit;
-                    }
-                    // 如果下一个是数字，则说明已经读取完成
-                    else {
-                        currentState = State.intToken;
-                        endFlag = true;
-                    }
-                }
-                else if (cur_word == '*') {
-                    if (next_word == '*') {
-                        currentState = State.powerToken;
-                    }
-                    else {
-                        currentState = State.mulToken;
-                    }
-                    endFlag = true;
-                }
-                else if (cur_word == '=') {
-                    if (next_word == '=') {
-                        currentState = State.equalToken;
-                    }
-                    else {
-                        currentState = State.assignToken;
-                    }
-                    endFlag = true;
-                }
-                // 左引号
-                else if (cur_word == '"') {
-                    currentState = State.leftQuotation;
-                }
-                else if (cur_word == '(') {
-                    currentState = State.leftParenthesisToken;
-                    endFlag = true;
-                }
-                else if (cur_word == ')') {
-                    currentState = State.rightParenthesisToken;
-                    endFlag = true;
-                }
-                else if (cur_word == ':') {
-                    currentState = State.semicolonToken;
-                    endFlag = true;
-                }
-                else if (cur_word == '+') {
-                    currentState = State.addToken;
-                    endFlag = true;
-                }
-                else if (cur_word == '-') {
-                    currentState = State.minusToken;
-                    endFlag = true;
-                }
-                else if (cur_word == '/') {
-                    currentState = State.divToken;
-                    endFlag = true;
-                }
-                else if (cur_word == ',') {
-                    currentState = State.commaToken;
-                    endFlag = true;
-                }
-                else if (cur_word == ';') {
-                    currentState = State.semicolonToken;
-                    endFlag = true;
-                }
-                // 其余读取到的其余字符则保持在start状态
-                else {
-                    currentState = State.start;
-                }
-            }
-            case letter -> {
-                // 不改变当前状态
-                if (Character.isLetter(cur_word) || Character.isDigit(cur_word)) {
-                    currentLetter += cur_word;
-                    // 如果下一个字符还是字母或数字，则不进行关键字匹配
-                    if (Character.isLetter(next_word) || Character.isDigit(next_word)) {
-                        currentState = State.letter;
-                    }
-                    // 如果下一个字符既不是字母也不是数字（意味着标识符或关键字输入已经结束）
-                    else{
-                        // 先进行关键字匹配
-                        for (String keyWord : keyWordList) {
-                            if (keyWord.equals(currentLetter)) {
-                                currentState = State.keyWordToken;
-                                break;
-                            }
-                        }
-                        // 若未匹配上，则说明是标识符
-                        currentState = (currentState == State.keyWordToken) ? State.keyWordToken : State.idToken;
-                        endFlag = true;
-                    }
-                }
-            }
-            /*
-              第二列 两个状态
-              digit intToken
-             */
-            case digit -> {
-                if (Character.isDigit(cur_word)) {
-                    currentState = State.digit;
-                }
-                else {
-                    currentState = State.intToken;
-                    endFlag = true;
+    // 单字符的运算符与界符, 以及其对应的 TokenKind 标识符
+    private static final Map<Character, String> PUNCTUATIONS = Map.of(
+        '=', "=",
+        ',', ",",
+        ';', "Semicolon",
+        ':', "Semicolon",
+        '+', "+",
+        '-', "-",
+        '*', "*",
+        '/', "/",
+        '(', "(",
+        ')', ")"
+    );
+
+    // 字符类: 其它字符 (不能作为任何词法单元的开头), 数字, 不出现在关键字中的字母或下划线
+    // 之后依次为每个在关键字中出现的字母各占一类, 每个运算符与界符各占一类
+    private static final int OTHER = 0;
+    private static final int DIGIT = 1;
+    private static final int LETTER = 2;
+
+    private static final byte[] charClass = new byte[128];
+    private static final int punctuationClassBegin;
+    private static final int classCount;
+
+    // 稠密的状态转移表, 下标为 state * classCount + charClass
+    private static final int[] transitions;
+
+    // 每个状态接受时对应的 TokenKind 标识符, 非接受状态为 null
+    private static final String[] acceptIds;
+
+    // 每个状态接受时是否为标识符, 是否为带有文本的词法单元 (标识符与常数)
+    private static final boolean[] identifierStates;
+    private static final boolean[] textStates;
+
+    // 由 acceptIds 解析出的 TokenKind 序号, 非接受状态为 -1. 由于码点文件在运行期读取, 所以需要在首次使用时才能构造
+    // 可能被多个线程同时构造, 但构造结果相同, 用 volatile 保证构造完成的数组对其它线程可见
+    private static volatile int[] acceptOrdinals = null;
+
+    static {
+        // 构造字符类
+        int nextClass = LETTER + 1;
+        for (char c = '0'; c <= '9'; c++) {
+            charClass[c] = DIGIT;
+        }
+        for (char c = 'a'; c <= 'z'; c++) {
+            charClass[c] = LETTER;
+        }
+        for (char c = 'A'; c <= 'Z'; c++) {
+            charClass[c] = LETTER;
+        }
+        charClass['_'] = LETTER;
+        for (final var keyword : KEYWORDS) {
+            for (final var c : keyword.toCharArray()) {
+                if (charClass[c] == LETTER) {
+                    charClass[c] = (byte) nextClass++;
                 }
             }
-            /*
-              第三列 三个状态
-              plus powerToken plusToken
-             */
-            case mul -> {
-                if (cur_word == '*') {
-                    currentState = State.powerToken;
-                }
-                else {
-                    currentState = State.mulToken;
-                }
-                endFlag = true;
+        }
+        punctuationClassBegin = nextClass;
+        for (final var c : PUNCTUATIONS.keySet()) {
+            charClass[c] = (byte) nextClass++;
+        }
+        classCount = nextClass;
+
+        // 构造状态, 0 与 1 分别是死状态与开始状态, 2 为标识符状态, 3 为整数状态
+        final var table = new ArrayList<int[]>();
+        final var accepts = new ArrayList<String>();
+        final var dead = newState(table, accepts, null);
+        final var start = newState(table, accepts, null);
+        final var id = newState(table, accepts, "id");
+        final var intConst = newState(table, accepts, "IntConst");
+        assert dead == DEAD && start == START && id == IDENTIFIER && intConst == INT_CONST;
+
+        // 标识符状态在任意字母, 数字上均保持不变
+        for (int cls = DIGIT; cls < classCount; cls++) {
+            if (isIdentifierClass(cls)) {
+                table.get(id)[cls] = id;
             }
-            /*
-              第四列 三个状态
-              assign equalToke assignToken
-             */
-            case assign -> {
-                if (cur_word == '=') {
-                    currentState = State.equalToken;
-                }
-                else {
-                    currentState = State.assignToken;
-                }
-                endFlag = true;
+        }
+        // 整数状态只在数字上保持不变
+        table.get(intConst)[DIGIT] = intConst;
+
+        // 开始状态: 字母进入标识符状态, 数字进入整数状态
+        for (int cls = LETTER; cls < classCount; cls++) {
+            if (isIdentifierClass(cls)) {
+                table.get(start)[cls] = id;
             }
-            /*
-              常量列 三个状态
-             */
-            case leftQuotation -> {
-                if (cur_word == '"') {
-                    currentState = State.rightQuotation;
+        }
+        table.get(start)[DIGIT] = intConst;
+
+        // 运算符与界符各自对应一个接受状态
+        for (final var entry : PUNCTUATIONS.entrySet()) {
+            final var state = newState(table, accepts, entry.getValue());
+            table.get(start)[charClass[entry.getKey()]] = state;
+        }
+
+        // 关键字展开为字典树, 树上每个状态在其余标识符字符上都转移到标识符状态
+        for (final var keyword : KEYWORDS) {
+            var state = start;
+            for (int i = 0; i < keyword.length(); i++) {
+                final var cls = charClass[keyword.charAt(i)];
+                final var isLast = i == keyword.length() - 1;
+                var next = table.get(state)[cls];
+                if (next == id || next == DEAD) {
+                    next = newState(table, accepts, "id");
+                    for (int other = DIGIT; other < classCount; other++) {
+                        if (isIdentifierClass(other)) {
+                            table.get(next)[other] = id;
+                        }
+                    }
+                    table.get(state)[cls] = next;
                 }
-            }
-            case rightQuotation -> {
-                if (cur_word == '"') {
-                    currentState = State.constToken;
-                    endFlag = true;
+                if (isLast) {
+                    accepts.set(next, keyword);
                 }
+                state = next;
             }
+        }
 
-            /*
-              默认状态 保持当前状态不变
-             */
-            default -> {
-            }
+        // 压平为一维数组
+        transitions = new int[table.size() * classCount];
+        for (int state = 0; state < table.size(); state++) {
+            System.arraycopy(table.get(state), 0, transitions, state * classCount, classCount);
+        }
+        acceptIds = accepts.toArray(new String[0]);
+        identifierStates = new boolean[acceptIds.length];
+        textStates = new boolean[acceptIds.length];
+        for (int state = 0; state < acceptIds.length; state++) {
+            identifierStates[state] = "id".equals(acceptIds[state]);
+            textStates[state] = identifierStates[state] || "IntConst".equals(acceptIds[state]);
         }
     }
 
+    private static int newState(List<int[]> table, List<String> accepts, String acceptId) {
+        table.add(new int[classCount]);
+        accepts.add(acceptId);
+        return table.size() - 1;
+    }
+
     /**
-     * 关键字判断函数，如果有新的关键字加入，则直接在这里加就行了
+     * @param cls 字符类
+     * @return 该字符类是否可以出现在标识符中 (数字, 字母, 以及关键字中出现的字母)
      */
-    public static void setKeyWordList() {
-        if (keyWordList.isEmpty()) {
-            keyWordList.add("int");
-            keyWordList.add("return");
-        }
+    private static boolean isIdentifierClass(int cls) {
+        return cls >= DIGIT && cls < punctuationClassBegin;
     }
 
     /**
-     * 完成词法分析过程的自动机
-     * @param text 读进来的每一行文字
-     * @return 对应的TokenList
+     * 状态转移函数
+     *
+     * @param state 当前状态
+     * @param c     当前读入的字符
+     * @return 转移到的状态, 无法转移时为 {@link #DEAD}
      */
-    public static List<TokenKind> textAnalyze(String text) {
-        setKeyWordList();
-        // 关键字在表中对应的id
-        String id;
-        // 状态初始化
-        currentState = State.start;
-        // 将字符串转化为一个一个单个的字母
-        char[] wordArray = text.toCharArray();
-        // 当前句子的分析结果
-        List<TokenKind> tokenKindList = new ArrayList<>();
-        // 遍历每一个字母
-        for (int word_index = 0; word_index < wordArray.length; word_index++) {
-            char cur_word;
-            char next_word;
-            // 如果还没遍历到最后一个字母
-            if (word_index < wordArray.length - 1) {
-                // 当前字母和下一个字母
-                cur_word = wordArray[word_index];
-                next_word = wordArray[word_index + 1];
-            }
-            else {
-                cur_word = wordArray[word_index];  // 当前为最后一个字母
-                next_word = wordArray[word_index]; // 同样为最后一个字母
-            }
+    public static int step(int state, int c) {
+        final var cls = c < 128 ? charClass[c] : OTHER;
+        return transitions[state * classCount + cls];
+    }
 
-            // 当到达结束状态时
-            if (endFlag) {
-                // 判断结束状态种类
-                id = judgeCurrentId(currentState);
+    /**
+     * @param state 状态
+     * @return 该状态是否为接受状态
+     */
+    public static boolean isAccepting(int state) {
+        return acceptIds[state] != null;
+    }
 
-                // 状态机初始化
-                initializeAutomata();
+    /**
+     * @param state 接受状态
+     * @return 该接受状态是否识别出了标识符
+     */
+    public static boolean isIdentifier(int state) {
+        return identifierStates[state];
+    }
 
-                // 返回对应的TokenKind
-                TokenKind curTokenKind = TokenKind.fromString(String.valueOf(id));
-                tokenKindList.add(curTokenKind);
+    /**
+     * @param state 接受状态
+     * @return 该接受状态识别出的词法单元是否带有文本 (标识符与常数)
+     */
+    public static boolean hasText(int state) {
+        return textStates[state];
+    }
 
+    /**
+     * @param state 接受状态
+     * @return 该接受状态对应的 TokenKind 的序号
+     * @see TokenKind#getOrdinal()
+     */
+    public static int acceptOrdinal(int state) {
+        var ordinals = acceptOrdinals;
+        if (ordinals == null) {
+            ordinals = new int[acceptIds.length];
+            for (int i = 0; i < acceptIds.length; i++) {
+                ordinals[i] = acceptIds[i] == null ? -1 : TokenKind.fromString(acceptIds[i]).getOrdinal();
             }
-            // 否则继续运行自动机
-            stateTransition(cur_word, next_word);
+            acceptOrdinals = ordinals;
         }
-
-        // 单独判断最后一个字
-        id = judgeCurrentId(currentState);
-        initializeAutomata();
-
-        // 返回对应的TokenKind
-        TokenKind curTokenKind = TokenKind.fromString(String.valueOf(id));
-        tokenKindList.add(curTokenKind);
-        return tokenKindList;
+        return ordinals[state];
     }
 
     /**
-     * 判断最终输出的ID
-     * @param currentState 当前状态
-     * @return 返回对应的TokenKind
+     * @param state 接受状态
+     * @return 该接受状态对应的 TokenKind
      */
-    public static String judgeCurrentId(State currentState) {
-        String id = null;
-        // 判断结束状态种类
-        switch (currentState) {
-            case keyWordToken -> id = currentLetter;
-            case equalToken -> id = "==";
-            case commaToken -> id = ",";
-            case semicolonToken -> id = "Semicolon";
-            case addToken -> id = "+";
-            case minusToken -> id = "-";
-            case mulToken -> id = "*";
-            case divToken -> id = "/";
-            case leftParenthesisToken -> id = "(";
-            case rightParenthesisToken -> id = ")";
-            // 判断为标识符
-            case idToken -> id = "id";
-            // 常数
-            case intToken -> id = "IntConst";
-            case assignToken -> id = "=";
-        }
-        return id;
+    public static TokenKind acceptKind(int state) {
+        return TokenKind.fromOrdinal(acceptOrdinal(state));
     }
 
     /**
-     * 初始化自动机，每次进行完一次判断对自动机进行复位
+     * 从 {@code begin} 开始按最长匹配识别一个词法单元
+     *
+     * @param text  文本
+     * @param begin 开始位置, 该位置上的字符不应被跳过
+     * @param end   文本结束位置
+     * @return 高 32 位为词法单元的结束位置 (不含), 低 32 位为接受状态; 若无法识别则返回 -1
      */
-    public static void initializeAutomata() {
-        currentState = State.start;
-        currentLetter = "";
-        endFlag = false;
-    }
+    public static long match(CharSequence text, int begin, int end) {
+        var state = START;
+        var acceptState = DEAD;
+        var acceptEnd = begin;
+        for (int i = begin; i < end; i++) {
+            state = step(state, text.charAt(i));
+            if (state == DEAD) {
+                break;
+            }
+            if (isAccepting(state)) {
+                acceptState = state;
+                acceptEnd = i + 1;
+            }
+        }
 
+        if (acceptState == DEAD) {
+            return -1;
+        }
+        return ((long) acceptEnd << 32) | acceptState;
+    }
 }
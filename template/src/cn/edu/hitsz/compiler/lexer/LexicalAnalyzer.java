@@ -1,15 +1,13 @@
 package cn.edu.hitsz.compiler.lexer;
 
-import cn.edu.hitsz.compiler.NotImplementedException;
 import cn.edu.hitsz.compiler.symtab.SymbolTable;
 import cn.edu.hitsz.compiler.utils.FileUtils;
 
-import java.io.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.stream.StreamSupport;
-import org.apache.commons.lang3.StringUtils;
+import java.util.Iterator;
 
 /**
  * TODO: 实验一: 实现词法分析
@@ -26,94 +24,82 @@ public class LexicalAnalyzer {
         this.symbolTable = symbolTable;
     }
 
-    // 缓冲区，按行输入到这个缓冲区中
-    private List<String> textContent = new LinkedList<>();
+    // 完整读入的源代码
+    private String textContent = "";
 
     /**
      * 从给予的路径中读取并加载文件内容
-     * 按行读取文件内容
+     * 一次性读入整个文件
      * @param path 路径
      */
     public void loadFile(String path) throws IOException {
         // 可自由实现各类缓冲区
         // 或直接采用完整读入方法
-
-        File file = new File(path);
-        FileInputStream fis = new FileInputStream(file);
-        InputStreamReader isr = new InputStreamReader(fis);
-        BufferedReader br = new BufferedReader(isr);
-
-        // 文本文件中每行数据
-        String line;
-        while ((line = br.readLine()) != null) {
-            textContent.add(line);
-        }
-        br.close();
+        textContent = Files.readString(Paths.get(path));
     }
 
+    // 词法分析的结果, 只在 run 中构造一次
+    private TokenBuffer tokenBuffer = null;
+
     /**
      * 执行词法分析, 准备好用于返回的 token 列表 <br>
      * 需要维护实验一所需的符号表条目, 而得在语法分析中才能确定的符号表条目的成员可以先设置为 null
+     * <br>
+     * 自动机在整段文本上一次识别出每个词法单元的类型与文本, 之后的 getTokens, getTokenBuffer 与 dumpTokens 都直接使用这次的结果
      */
-    public static List<List<TokenKind>> tokenKindList = new ArrayList<>();
     public void run() {
-        for (String text : textContent){
-            // 利用写好的自动机对每一行文本进行分析
-            // 返回行文本对应的tokenKind
-            tokenKindList.add(LexicalAnalysisAutomata.textAnalyze(text));
+        tokenBuffer = TokenBuffer.lex(textContent);
+        // 标识符按第一次出现的顺序加入符号表, 每个标识符只插入一次
+        for (final var identifier : tokenBuffer.getIdentifiers()) {
+            updateSymbolTable(identifier);
         }
     }
 
-
-    public static List<Token> tokenList = new ArrayList<>();
     /**
      * 获得词法分析的结果, 保证在调用了 run 方法之后调用
      *
-     * @return Token 列表
+     * @return Token 列表, 多次调用得到的是同一份结果
      */
     public Iterable<Token> getTokens() {
         // 词法分析过程可以使用 Stream 或 Iterator 实现按需分析
         // 亦可以直接分析完整个文件
         // 总之实现过程能转化为一列表即可
-        for (int index = 0; index < tokenKindList.size(); index ++) {
-
-            String text = textContent.get(index);
-            List<TokenKind> textTokenKind = tokenKindList.get(index);
-
-            // text中是按照空格将不同类型的文本隔开的
-            String[] wordArray = StringUtils.split(text, " ;");
+        return getTokenBuffer();
+    }
 
-            for (int i = 0; i < wordArray.length; i++) {
-                TokenKind curTokenKind = textTokenKind.get(i);
-                Token curToken;
-                // 如果是标识符或常数需要生成复杂的token
-                if (curTokenKind.getTermName().equals("id") || curTokenKind.getTermName().equals("IntConst")) {
-                    curToken= Token.normal(curTokenKind, wordArray[i]);
-                    // 如果是标识符，更新符号表
-                    if (curTokenKind.getTermName().equals("id")) {
-                        updateSymbolTable(wordArray[i]);
-                    }
-                }
-                // 否则则生成简单的token
-                else {
-                    curToken = Token.simple(curTokenKind);
-                }
-                tokenList.add(curToken);
-            }
-            // 还需要加上分号
-            tokenList.add(Token.simple(textTokenKind.get(wordArray.length)));
+    /**
+     * 获得按列存储的词法分析结果, 若尚未调用 run 方法则先执行一次
+     * <br>
+     * 与 getTokens 得到的是同一份结果, 但可以直接交给语法分析器通过游标读取, 不为每个词法单元单独分配对象
+     *
+     * @return 词法单元序列, 以 EOF 结尾
+     */
+    public TokenBuffer getTokenBuffer() {
+        if (tokenBuffer == null) {
+            run();
         }
-        // 最后加上eof
-        tokenList.add(Token.eof());
+        return tokenBuffer;
+    }
 
-        return tokenList;
+    /**
+     * 以流式方式对文件进行词法分析, 不需要事先调用 loadFile 与 run
+     * <br>
+     * 返回的迭代器在每次被调用 next 时才从文件中读取并识别下一个词法单元, 识别出的标识符同样会加入符号表
+     *
+     * @param path 源代码路径
+     * @return 按需给出词法单元的迭代器, 最后一个词法单元为 EOF
+     */
+    public Iterator<Token> streamTokens(String path) {
+        return new TokenStream(path, symbolTable);
     }
 
     public void dumpTokens(String path) {
-        FileUtils.writeLines(
-            path,
-            StreamSupport.stream(getTokens().spliterator(), false).map(Token::toString).toList()
-        );
+        final var buffer = getTokenBuffer();
+        final var lines = new ArrayList<String>(buffer.size());
+        for (final var token : buffer) {
+            lines.add(token.toString());
+        }
+        FileUtils.writeLines(path, lines);
     }
 
     /**
@@ -121,12 +107,8 @@ public class LexicalAnalyzer {
      * @param text 对应的标识符
      */
     public void updateSymbolTable(String text) {
-        try {
+        if (!symbolTable.has(text)) {
             symbolTable.add(text);
-        }catch (RuntimeException e) {
-//            System.out.println("Symbol Table Already Contains that key!");
         }
     }
-
-
 }
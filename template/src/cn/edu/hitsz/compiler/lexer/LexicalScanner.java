@@ -0,0 +1,121 @@
+package cn.edu.hitsz.compiler.lexer;
+
+/**
+ * 对一段文本逐个识别词法单元的扫描器
+ * <br>
+ * 自动机的转移表是只读且全局共享的, 而扫描过程中的全部状态 (当前位置, 刚识别出的词法单元) 都保存在扫描器实例中,
+ * 因此不同线程可以各自持有扫描器, 同时对不同的文本进行词法分析. 单个扫描器实例不是线程安全的.
+ * <br>
+ * 用法:
+ * <pre>{@code
+ * final var scanner = new LexicalScanner(text);
+ * while (scanner.advance()) {
+ *     scanner.getKind(); scanner.getBegin(); scanner.getEnd();
+ * }
+ * }</pre>
+ *
+ * @see LexicalAnalysisAutomata 扫描器所使用的自动机
+ */
+public class LexicalScanner {
+    private final CharSequence text;
+    private final int limit;
+
+    // 下一次识别开始的位置
+    private int pos;
+
+    // 刚识别出的词法单元
+    private int state = LexicalAnalysisAutomata.DEAD;
+    private int begin = 0;
+    private int end = 0;
+
+    /**
+     * @param text 待分析的文本
+     */
+    public LexicalScanner(CharSequence text) {
+        this(text, 0, text.length());
+    }
+
+    /**
+     * @param text  待分析的文本
+     * @param begin 开始位置
+     * @param limit 结束位置 (不含)
+     */
+    public LexicalScanner(CharSequence text, int begin, int limit) {
+        this.text = text;
+        this.pos = begin;
+        this.limit = limit;
+    }
+
+    /**
+     * 识别下一个词法单元, 无法识别的字符 (如空白) 会被跳过
+     *
+     * @return 是否识别出了词法单元; 为 false 时说明文本已经分析完毕
+     */
+    public boolean advance() {
+        while (pos < limit) {
+            final var matched = LexicalAnalysisAutomata.match(text, pos, limit);
+            if (matched < 0) {
+                pos++;
+                continue;
+            }
+
+            state = (int) matched;
+            begin = pos;
+            end = (int) (matched >>> 32);
+            pos = end;
+            return true;
+        }
+
+        state = LexicalAnalysisAutomata.DEAD;
+        return false;
+    }
+
+    /**
+     * @return 刚识别出的词法单元的类型
+     */
+    public TokenKind getKind() {
+        return LexicalAnalysisAutomata.acceptKind(state);
+    }
+
+    /**
+     * @return 刚识别出的词法单元的类型的序号
+     */
+    public int getKindOrdinal() {
+        return LexicalAnalysisAutomata.acceptOrdinal(state);
+    }
+
+    /**
+     * @return 刚识别出的词法单元是否为标识符
+     */
+    public boolean isIdentifier() {
+        return LexicalAnalysisAutomata.isIdentifier(state);
+    }
+
+    /**
+     * @return 刚识别出的词法单元是否带有文本 (标识符与常数)
+     */
+    public boolean hasText() {
+        return LexicalAnalysisAutomata.hasText(state);
+    }
+
+    /**
+     * @return 刚识别出的词法单元的开始位置
+     */
+    public int getBegin() {
+        return begin;
+    }
+
+    /**
+     * @return 刚识别出的词法单元的结束位置 (不含)
+     */
+    public int getEnd() {
+        return end;
+    }
+
+    /**
+     * @return 刚识别出的词法单元的文本
+     */
+    public String getLexeme() {
+        return text.subSequence(begin, end).toString();
+    }
+}
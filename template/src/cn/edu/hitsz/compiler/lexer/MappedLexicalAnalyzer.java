@@ -0,0 +1,624 @@
+package cn.edu.hitsz.compiler.lexer;
+
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * 面向超大源文件的词法分析器
+ * <br>
+ * 源文件通过 {@link FileChannel#map} 映射进内存, 自动机直接在 ASCII 字节上运行, 不经过字符解码.
+ * 由于单次映射最多 2GB, 文件被切成若干段分别映射, 以 long 型偏移量统一寻址.
+ * <br>
+ * 识别出的词法单元只记录其接受状态, 在文件中的偏移量与长度, 不复制文本. 只有标识符会在第一次出现时被构造为 String,
+ * 之后相同的标识符共用同一个 String, 分析结束后再按出现顺序加入符号表. 其余词法单元的文本只在通过 {@link #getTokens()} 读取时才构造.
+ * <br>
+ * 除顺序分析外, 还可以通过 {@link #run(ForkJoinPool)} 把输入在分号处切成若干块并行分析.
+ * <br>
+ * 通过 {@link #setWordScan(boolean)} 可以让空白, 标识符与整数这几种最常见的字节串以按字 (8 字节) 并行比较的方式跳过或找到结尾,
+ * 其余词法单元仍由自动机逐字节识别, 二者结果相同. 按字扫描只在空白与标识符都较长时有明显收益 (约 60MB 的输入上,
+ * 空白长达 8 或 32 个空格, 标识符 16 到 47 个字符时快 1.3 到 1.4 倍), 对由短标识符与单个空格组成的源代码几乎没有差别, 所以默认关闭.
+ * 结果与速度的比较见 {@link WordScanBenchmark}.
+ *
+ * @see LexicalAnalyzer 按行读取文本的词法分析器, 二者输出的词法单元相同
+ */
+public class MappedLexicalAnalyzer {
+    // 每个映射段 1GB
+    private static final int SEGMENT_SHIFT = 30;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+    // 并行分析时每块的最小字节数, 以及每个线程平均分到的块数
+    private static final long MIN_CHUNK_SIZE = 1L << 20;
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    // 逐字节检查这么多个字节后仍未结束的串才改为按字处理, 大多数空白与标识符都很短, 按字处理反而更慢
+    private static final int SHORT_RUN = 4;
+
+    // 按字并行比较时用到的常量: 每个字节的最高位, 以及每个字节都为 1 的字
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final long LOW_BITS = 0x0101010101010101L;
+
+    private final SymbolTable symbolTable;
+
+    public MappedLexicalAnalyzer(SymbolTable symbolTable) {
+        this.symbolTable = symbolTable;
+    }
+
+    // 文件的各个映射段与文件长度
+    private MappedByteBuffer[] segments = new MappedByteBuffer[0];
+    private long size = 0;
+
+    // 全部词法单元
+    private TokenColumns tokens = new TokenColumns();
+
+    // 是否按字跳过空白, 标识符与整数
+    private boolean wordScan = false;
+
+    /**
+     * 选择是否按字 (8 字节) 并行地跳过空白, 找到标识符与整数的结尾. 关闭时完全由自动机逐字节识别
+     *
+     * @param enabled 是否开启
+     */
+    public void setWordScan(boolean enabled) {
+        this.wordScan = enabled;
+    }
+
+    /**
+     * 将文件映射进内存
+     *
+     * @param path 路径
+     */
+    public void loadFile(String path) throws IOException {
+        try (final var channel = FileChannel.open(Paths.get(path))) {
+            size = channel.size();
+            final var segmentCount = (int) ((size + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+            segments = new MappedByteBuffer[segmentCount];
+            for (int i = 0; i < segmentCount; i++) {
+                final var begin = (long) i << SEGMENT_SHIFT;
+                final var length = Math.min(size - begin, 1L << SEGMENT_SHIFT);
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, begin, length);
+                // 按字读取时, 低地址的字节位于字的低位
+                segments[i].order(ByteOrder.LITTLE_ENDIAN);
+            }
+        }
+    }
+
+    /**
+     * 执行词法分析, 并将出现过的标识符加入符号表
+     */
+    public void run() {
+        tokens = new TokenColumns();
+        lex(0, size, tokens);
+        updateSymbolTable();
+    }
+
+    /**
+     * 并行执行词法分析, 结果与 {@link #run()} 相同
+     * <br>
+     * 由于没有词法单元会跨过分号, 输入在分号之后被切成若干块, 每块在线程池中独立分析到各自的缓冲区,
+     * 其间只在块内记录新出现的标识符. 全部完成后按块的顺序拼接各缓冲区, 再统一把标识符批量加入符号表.
+     *
+     * @param pool 执行分析的线程池
+     */
+    public void run(ForkJoinPool pool) {
+        final var boundaries = splitAtSemicolons(pool.getParallelism() * CHUNKS_PER_THREAD);
+        final var chunkCount = boundaries.length - 1;
+        if (chunkCount <= 1) {
+            run();
+            return;
+        }
+
+        // 各块独立分析
+        final var lexTasks = new ArrayList<ForkJoinTask<TokenColumns>>();
+        for (int i = 0; i < chunkCount; i++) {
+            final var begin = boundaries[i];
+            final var end = boundaries[i + 1];
+            lexTasks.add(pool.submit(() -> {
+                final var chunk = new TokenColumns();
+                lex(begin, end, chunk);
+                return chunk;
+            }));
+        }
+        final var chunks = new ArrayList<TokenColumns>();
+        for (final var task : lexTasks) {
+            chunks.add(task.join());
+        }
+
+        // 按块的顺序合并标识符, 并计算每块在最终结果中的起始下标
+        final var merged = new TokenColumns();
+        final var firstIndex = new int[chunkCount + 1];
+        final var identifierMapping = new int[chunkCount][];
+        for (int i = 0; i < chunkCount; i++) {
+            final var chunk = chunks.get(i);
+            firstIndex[i + 1] = Math.addExact(firstIndex[i], chunk.count);
+            identifierMapping[i] = new int[chunk.identifierCount];
+            for (int local = 0; local < chunk.identifierCount; local++) {
+                identifierMapping[i][local] = merged.intern(chunk.identifiers[local]);
+            }
+        }
+
+        // 并行地把各块复制到最终结果中
+        merged.ensureCapacity(firstIndex[chunkCount]);
+        final var copyTasks = new ArrayList<ForkJoinTask<?>>();
+        for (int i = 0; i < chunkCount; i++) {
+            final var chunk = chunks.get(i);
+            final var mapping = identifierMapping[i];
+            final var at = firstIndex[i];
+            copyTasks.add(pool.submit(() -> merged.copyFrom(chunk, at, mapping)));
+        }
+        copyTasks.forEach(ForkJoinTask::join);
+        merged.count = firstIndex[chunkCount];
+        tokens = merged;
+
+        updateSymbolTable();
+    }
+
+    /**
+     * 获得词法分析的结果, 保证在调用了 run 方法之后调用
+     * <br>
+     * 返回的是一个视图, 每次迭代时才构造 Token 对象
+     *
+     * @return Token 列表, 最后一个为 EOF
+     */
+    public Iterable<Token> getTokens() {
+        return () -> new Iterator<>() {
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index <= tokens.count;
+            }
+
+            @Override
+            public Token next() {
+                if (index > tokens.count) {
+                    throw new NoSuchElementException();
+                }
+                final var token = index == tokens.count ? Token.eof() : tokenAt(index);
+                index++;
+                return token;
+            }
+        };
+    }
+
+    /**
+     * 将词法单元输出到文件, 格式与 {@link LexicalAnalyzer#dumpTokens} 相同. 文本直接从映射中复制, 不构造 String.
+     *
+     * @param path 输出路径
+     */
+    public void dumpTokens(String path) {
+        final var separator = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+        try (final var out = new BufferedOutputStream(Files.newOutputStream(Paths.get(path)), 1 << 16)) {
+            for (int i = 0; i < tokens.count; i++) {
+                final var kind = LexicalAnalysisAutomata.acceptKind(tokens.states[i]);
+                out.write('(');
+                out.write(kind.getIdentifier().getBytes(StandardCharsets.UTF_8));
+                out.write(',');
+                if (LexicalAnalysisAutomata.hasText(tokens.states[i])) {
+                    writeBytes(out, tokens.offsets[i], tokens.lengths[i]);
+                }
+                out.write(')');
+                out.write(separator);
+            }
+            out.write(Token.eof().toString().getBytes(StandardCharsets.UTF_8));
+            out.write(separator);
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception for " + path, e);
+        }
+    }
+
+    private Token tokenAt(int index) {
+        final var kind = LexicalAnalysisAutomata.acceptKind(tokens.states[index]);
+        if (tokens.symbols[index] >= 0) {
+            return Token.normal(kind, tokens.identifiers[tokens.symbols[index]]);
+        } else if (LexicalAnalysisAutomata.hasText(tokens.states[index])) {
+            return Token.normal(kind, textAt(tokens.offsets[index], tokens.lengths[index]));
+        } else {
+            return Token.simple(kind);
+        }
+    }
+
+    /**
+     * 分析 [begin, end) 范围内的字节, 将识别出的词法单元追加到 out 中
+     */
+    private void lex(long begin, long end, TokenColumns out) {
+        if (wordScan) {
+            lexByWord(begin, end, out);
+            return;
+        }
+
+        var pos = begin;
+        while (pos < end) {
+            pos = lexOne(pos, end, out);
+        }
+    }
+
+    /**
+     * 从 pos 开始由自动机按最长匹配识别一个词法单元并追加到 out 中, 无法识别的字节 (如空白与非 ASCII 字符) 直接跳过
+     *
+     * @return 下一次识别开始的位置
+     */
+    private long lexOne(long pos, long end, TokenColumns out) {
+        var state = LexicalAnalysisAutomata.START;
+        var acceptState = LexicalAnalysisAutomata.DEAD;
+        var acceptEnd = pos;
+        for (long i = pos; i < end; i++) {
+            state = LexicalAnalysisAutomata.step(state, byteAt(i) & 0xFF);
+            if (state == LexicalAnalysisAutomata.DEAD) {
+                break;
+            }
+            if (LexicalAnalysisAutomata.isAccepting(state)) {
+                acceptState = state;
+                acceptEnd = i + 1;
+            }
+        }
+
+        if (acceptState == LexicalAnalysisAutomata.DEAD) {
+            return pos + 1;
+        }
+        out.add(acceptState, pos, (int) (acceptEnd - pos));
+        return acceptEnd;
+    }
+
+    /**
+     * 与 {@link #lex} 相同, 但空白, 标识符与整数按字处理
+     * <br>
+     * 自动机从开始状态读入数字后, 只会在数字上停留在整数状态; 读入字母后, 只会在标识符字符上停留在标识符或关键字前缀状态.
+     * 因此这两种词法单元的结尾就是对应字符串的结尾, 只需按字找到第一个不属于该字符集的字节. 长度超过最长关键字的标识符直接取标识符状态,
+     * 否则仍由自动机在这几个字节上确定是否为关键字.
+     */
+    private void lexByWord(long begin, long end, TokenColumns out) {
+        var pos = begin;
+        while (true) {
+            pos = skipWhitespace(pos, end);
+            if (pos >= end) {
+                break;
+            }
+
+            final var b = byteAt(pos);
+            if (isDigit(b)) {
+                final var runEnd = digitRunEnd(pos + 1, end);
+                out.add(LexicalAnalysisAutomata.INT_CONST, pos, (int) (runEnd - pos));
+                pos = runEnd;
+            } else if (isIdentifierStart(b)) {
+                final var runEnd = identifierRunEnd(pos + 1, end);
+                var state = LexicalAnalysisAutomata.IDENTIFIER;
+                if (runEnd - pos <= LexicalAnalysisAutomata.MAX_KEYWORD_LENGTH) {
+                    state = LexicalAnalysisAutomata.START;
+                    for (long i = pos; i < runEnd; i++) {
+                        state = LexicalAnalysisAutomata.step(state, byteAt(i));
+                    }
+                }
+                out.add(state, pos, (int) (runEnd - pos));
+                pos = runEnd;
+            } else {
+                pos = lexOne(pos, end, out);
+            }
+        }
+    }
+
+    private long skipWhitespace(long pos, long end) {
+        for (final var shortEnd = Math.min(end, pos + SHORT_RUN); pos < shortEnd; pos++) {
+            if (!isWhitespace(byteAt(pos))) {
+                return pos;
+            }
+        }
+        while (canReadWord(pos, end)) {
+            final var word = wordAt(pos);
+            final var whitespace = equalBytes(word, ' ') | equalBytes(word, '\n')
+                | equalBytes(word, '\r') | equalBytes(word, '\t');
+            final var rest = ~whitespace & HIGH_BITS;
+            if (rest != 0) {
+                return pos + (Long.numberOfTrailingZeros(rest) >>> 3);
+            }
+            pos += Long.BYTES;
+        }
+        while (pos < end && isWhitespace(byteAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private long digitRunEnd(long pos, long end) {
+        for (final var shortEnd = Math.min(end, pos + SHORT_RUN); pos < shortEnd; pos++) {
+            if (!isDigit(byteAt(pos))) {
+                return pos;
+            }
+        }
+        while (canReadWord(pos, end)) {
+            final var rest = ~rangeBytes(wordAt(pos), '0', '9') & HIGH_BITS;
+            if (rest != 0) {
+                return pos + (Long.numberOfTrailingZeros(rest) >>> 3);
+            }
+            pos += Long.BYTES;
+        }
+        while (pos < end && isDigit(byteAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private long identifierRunEnd(long pos, long end) {
+        for (final var shortEnd = Math.min(end, pos + SHORT_RUN); pos < shortEnd; pos++) {
+            if (!isIdentifierStart(byteAt(pos)) && !isDigit(byteAt(pos))) {
+                return pos;
+            }
+        }
+        while (canReadWord(pos, end)) {
+            final var word = wordAt(pos);
+            // 大写字母置上 0x20 位后即为对应的小写字母, 其余 ASCII 字符不会因此落入 'a' 到 'z' 的范围
+            final var identifierBytes = rangeBytes(word | 0x2020202020202020L, 'a', 'z')
+                | rangeBytes(word, '0', '9') | equalBytes(word, '_');
+            final var rest = ~identifierBytes & HIGH_BITS;
+            if (rest != 0) {
+                return pos + (Long.numberOfTrailingZeros(rest) >>> 3);
+            }
+            pos += Long.BYTES;
+        }
+        while (pos < end && (isIdentifierStart(byteAt(pos)) || isDigit(byteAt(pos)))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * @return 字中等于 c 的字节的最高位置 1, 其余位为 0
+     */
+    private static long equalBytes(long word, char c) {
+        final var diff = word ^ (LOW_BITS * c);
+        // 低 7 位加上 0x7F 后, 只有低 7 位全为 0 的字节最高位仍为 0, 再排除最高位本身为 1 的字节
+        return ~(((diff & ~HIGH_BITS) + ~HIGH_BITS) | diff) & HIGH_BITS;
+    }
+
+    /**
+     * @return 字中属于 ASCII 字符且在 [low, high] 范围内的字节的最高位置 1, 其余位为 0
+     */
+    private static long rangeBytes(long word, char low, char high) {
+        // 每个字节置上最高位后再减, 不会向相邻字节借位; 对 ASCII 字节, 差的最高位为 1 当且仅当该字节不小于减数
+        final var atLeastLow = ((word | HIGH_BITS) - LOW_BITS * low) & HIGH_BITS;
+        final var aboveHigh = ((word | HIGH_BITS) - LOW_BITS * (high + 1)) & HIGH_BITS;
+        return atLeastLow & ~aboveHigh & ~word & HIGH_BITS;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static boolean isIdentifierStart(byte b) {
+        return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || b == '_';
+    }
+
+    /**
+     * @return 从 pos 开始的 8 个字节是否都在 end 之前且位于同一映射段内
+     */
+    private static boolean canReadWord(long pos, long end) {
+        return pos + Long.BYTES <= end && (pos & SEGMENT_MASK) <= SEGMENT_MASK - (Long.BYTES - 1);
+    }
+
+    private long wordAt(long pos) {
+        return segments[(int) (pos >>> SEGMENT_SHIFT)].getLong((int) (pos & SEGMENT_MASK));
+    }
+
+    /**
+     * 把输入切成大致等长的若干块, 每块 (除最后一块外) 都以分号结尾
+     *
+     * @param chunkCount 期望的块数
+     * @return 各块的边界, 第 i 块为 [boundaries[i], boundaries[i + 1])
+     */
+    private long[] splitAtSemicolons(int chunkCount) {
+        final var chunkSize = Math.max(MIN_CHUNK_SIZE, size / Math.max(1, chunkCount));
+        final var boundaries = new ArrayList<Long>();
+        boundaries.add(0L);
+
+        var pos = 0L;
+        while (true) {
+            var next = pos + chunkSize;
+            if (next >= size) {
+                break;
+            }
+            // 找到下一个分号, 在其后切开
+            while (next < size && byteAt(next) != ';') {
+                next++;
+            }
+            if (next >= size - 1) {
+                break;
+            }
+            pos = next + 1;
+            boundaries.add(pos);
+        }
+
+        boundaries.add(size);
+        return boundaries.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * 将新出现的标识符按其第一次出现的顺序批量加入符号表
+     */
+    private void updateSymbolTable() {
+        for (int i = 0; i < tokens.identifierCount; i++) {
+            final var text = tokens.identifiers[i];
+            if (!symbolTable.has(text)) {
+                symbolTable.add(text);
+            }
+        }
+    }
+
+    private boolean sameText(String text, long offset, int length) {
+        if (text.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (text.charAt(i) != byteAt(offset + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String textAt(long offset, int length) {
+        final var bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = byteAt(offset + i);
+        }
+        // 词法单元的文本只可能由 ASCII 字符组成
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    private void writeBytes(OutputStream out, long offset, int length) throws IOException {
+        for (int i = 0; i < length; i++) {
+            out.write(byteAt(offset + i));
+        }
+    }
+
+    private byte byteAt(long pos) {
+        return segments[(int) (pos >>> SEGMENT_SHIFT)].get((int) (pos & SEGMENT_MASK));
+    }
+
+    /**
+     * 按列存储的一段词法单元, 同时记录其中出现过的标识符
+     * <br>
+     * 标识符以开放定址的哈希表组织, 用于在不构造 String 的情况下判断标识符是否出现过
+     */
+    private final class TokenColumns {
+        private int count = 0;
+        private int[] states = new int[1024];
+        private long[] offsets = new long[1024];
+        private int[] lengths = new int[1024];
+        // 标识符在 identifiers 中的下标, 其余词法单元为 -1
+        private int[] symbols = new int[1024];
+
+        // 按第一次出现的顺序排列的标识符
+        private String[] identifiers = new String[16];
+        private int identifierCount = 0;
+        private int[] identifierSlots = newSlots(64);
+
+        private void add(int state, long offset, int length) {
+            ensureCapacity(count + 1);
+            states[count] = state;
+            offsets[count] = offset;
+            lengths[count] = length;
+            symbols[count] = LexicalAnalysisAutomata.isIdentifier(state)
+                ? intern(offset, length)
+                : -1;
+            count++;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > states.length) {
+                final var newCapacity = Math.max(capacity, states.length * 2);
+                states = Arrays.copyOf(states, newCapacity);
+                offsets = Arrays.copyOf(offsets, newCapacity);
+                lengths = Arrays.copyOf(lengths, newCapacity);
+                symbols = Arrays.copyOf(symbols, newCapacity);
+            }
+        }
+
+        /**
+         * 将另一段词法单元复制到下标 at 开始的位置, 并把其中的标识符下标换成本段中的下标
+         */
+        private void copyFrom(TokenColumns chunk, int at, int[] identifierMapping) {
+            System.arraycopy(chunk.states, 0, states, at, chunk.count);
+            System.arraycopy(chunk.offsets, 0, offsets, at, chunk.count);
+            System.arraycopy(chunk.lengths, 0, lengths, at, chunk.count);
+            for (int i = 0; i < chunk.count; i++) {
+                final var local = chunk.symbols[i];
+                symbols[at + i] = local < 0 ? -1 : identifierMapping[local];
+            }
+        }
+
+        /**
+         * 查找位于文件中的标识符, 若是第一次出现则构造 String
+         *
+         * @return 该标识符在 identifiers 中的下标
+         */
+        private int intern(long offset, int length) {
+            // 与 String.hashCode 的计算方式相同
+            var hash = 0;
+            for (int i = 0; i < length; i++) {
+                hash = 31 * hash + byteAt(offset + i);
+            }
+
+            final var mask = identifierSlots.length - 1;
+            var slot = TokenBuffer.spread(hash) & mask;
+            while (identifierSlots[slot] >= 0) {
+                final var candidate = identifierSlots[slot];
+                if (sameText(identifiers[candidate], offset, length)) {
+                    return candidate;
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            return insert(slot, textAt(offset, length));
+        }
+
+        /**
+         * 查找标识符, 若是第一次出现则加入本段
+         *
+         * @return 该标识符在 identifiers 中的下标
+         */
+        private int intern(String text) {
+            final var mask = identifierSlots.length - 1;
+            var slot = TokenBuffer.spread(text.hashCode()) & mask;
+            while (identifierSlots[slot] >= 0) {
+                final var candidate = identifierSlots[slot];
+                if (identifiers[candidate].equals(text)) {
+                    return candidate;
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            return insert(slot, text);
+        }
+
+        private int insert(int slot, String text) {
+            if (identifierCount == identifiers.length) {
+                identifiers = Arrays.copyOf(identifiers, identifierCount * 2);
+            }
+            identifiers[identifierCount] = text;
+            identifierSlots[slot] = identifierCount;
+
+            identifierCount++;
+            // 装填因子超过 1/2 时扩容
+            if (identifierCount * 2 > identifierSlots.length) {
+                rehash(identifierSlots.length * 2);
+            }
+            return identifierCount - 1;
+        }
+
+        private void rehash(int capacity) {
+            identifierSlots = newSlots(capacity);
+            final var mask = capacity - 1;
+            for (int index = 0; index < identifierCount; index++) {
+                var slot = TokenBuffer.spread(identifiers[index].hashCode()) & mask;
+                while (identifierSlots[slot] >= 0) {
+                    slot = (slot + 1) & mask;
+                }
+                identifierSlots[slot] = index;
+            }
+        }
+    }
+
+    private static int[] newSlots(int capacity) {
+        final var slots = new int[capacity];
+        Arrays.fill(slots, -1);
+        return slots;
+    }
+}
@@ -0,0 +1,353 @@
+package cn.edu.hitsz.compiler.lexer;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * 按列存储的词法单元序列
+ * <br>
+ * 与 {@code List<Token>} 为每个词法单元分配一个对象不同, 该类把所有词法单元的类型序号, 在源代码中的开始位置与长度,
+ * 以及值分别存放在几个 int 数组中. 常数的值是预先解析好的整数, 标识符的值是其在标识符表中的下标, 相同的标识符共用同一个 String.
+ * 超出 int 范围的常数在词法上仍然合法, 其值记为 {@link #UNPARSED}, 需要时由使用者从文本解析.
+ * <br>
+ * 通过 {@link #cursor()} 得到的游标可以在不分配任何对象的情况下依次读取词法单元; 为了兼容, 该类也可以作为 {@code Iterable<Token>} 使用,
+ * 此时才会为每个词法单元构造 Token 对象. 序列的最后一个词法单元总是 EOF.
+ *
+ * @see Cursor
+ */
+public class TokenBuffer implements Iterable<Token> {
+    /**
+     * 超出 int 范围的常数的值
+     */
+    public static final int UNPARSED = -1;
+
+    private final CharSequence source;
+
+    private int count = 0;
+    // 词法单元类型的序号, 见 TokenKind#getOrdinal
+    private int[] kinds = new int[1024];
+    private int[] start = new int[1024];
+    private int[] length = new int[1024];
+    private int[] value = new int[1024];
+
+    // 按第一次出现的顺序排列的标识符, 以及用于查找的开放定址哈希表
+    private String[] identifiers = new String[16];
+    private int identifierCount = 0;
+    private int[] identifierSlots = newSlots(64);
+
+    // 标识符与常数的类型序号
+    private final int identifierKind;
+    private final int intConstKind;
+
+    private TokenBuffer(CharSequence source) {
+        this.source = source;
+        this.identifierKind = TokenKind.fromString("id").getOrdinal();
+        this.intConstKind = TokenKind.fromString("IntConst").getOrdinal();
+    }
+
+    /**
+     * 对整段源代码进行词法分析
+     *
+     * @param source 源代码
+     * @return 分析得到的词法单元序列, 以 EOF 结尾
+     */
+    public static TokenBuffer lex(CharSequence source) {
+        final var buffer = new TokenBuffer(source);
+        final var scanner = new LexicalScanner(source);
+        while (scanner.advance()) {
+            final var begin = scanner.getBegin();
+            final var end = scanner.getEnd();
+            if (scanner.isIdentifier()) {
+                buffer.add(scanner.getKindOrdinal(), begin, end, buffer.intern(begin, end));
+            } else if (scanner.hasText()) {
+                buffer.add(scanner.getKindOrdinal(), begin, end, buffer.parseInt(begin, end));
+            } else {
+                buffer.add(scanner.getKindOrdinal(), begin, end, 0);
+            }
+        }
+        buffer.add(TokenKind.eof().getOrdinal(), source.length(), source.length(), 0);
+        buffer.trimToSize();
+        return buffer;
+    }
+
+    /**
+     * @return 词法单元的数量, 包括末尾的 EOF
+     */
+    public int size() {
+        return count;
+    }
+
+    public TokenKind getKind(int index) {
+        return TokenKind.fromOrdinal(kinds[index]);
+    }
+
+    public int getKindOrdinal(int index) {
+        return kinds[index];
+    }
+
+    public int getStart(int index) {
+        return start[index];
+    }
+
+    public int getLength(int index) {
+        return length[index];
+    }
+
+    /**
+     * @param index 下标
+     * @return 常数的值, 超出 int 范围时为 {@link #UNPARSED}; 对于标识符则是其在标识符表中的下标
+     */
+    public int getValue(int index) {
+        return value[index];
+    }
+
+    /**
+     * @param index 下标
+     * @return 词法单元的文本, 只有标识符和常数有文本, 其余为空字符串
+     */
+    public String getText(int index) {
+        if (kinds[index] == identifierKind) {
+            return identifiers[value[index]];
+        } else if (kinds[index] == intConstKind) {
+            return source.subSequence(start[index], start[index] + length[index]).toString();
+        } else {
+            return "";
+        }
+    }
+
+    /**
+     * @return 出现过的所有标识符, 按第一次出现的顺序排列
+     */
+    public String[] getIdentifiers() {
+        return Arrays.copyOf(identifiers, identifierCount);
+    }
+
+    /**
+     * 构造下标处的 Token 对象
+     *
+     * @param index 下标
+     * @return Token
+     */
+    public Token get(int index) {
+        final var kind = getKind(index);
+        if (kind == TokenKind.eof()) {
+            return Token.eof();
+        } else if (kinds[index] == identifierKind || kinds[index] == intConstKind) {
+            return Token.normal(kind, getText(index));
+        } else {
+            return Token.simple(kind);
+        }
+    }
+
+    /**
+     * @return 指向第一个词法单元之前的游标
+     */
+    public Cursor cursor() {
+        return new Cursor(0, count);
+    }
+
+    /**
+     * @param begin 第一个词法单元的下标
+     * @param end   最后一个词法单元的下标加一
+     * @return 只读取 [begin, end) 中的词法单元的游标, 指向 begin 之前
+     */
+    public Cursor cursor(int begin, int end) {
+        if (begin < 0 || end > count || begin > end) {
+            throw new IndexOutOfBoundsException("Token range [%d, %d) out of [0, %d)".formatted(begin, end, count));
+        }
+        return new Cursor(begin, end);
+    }
+
+    @Override
+    public Iterator<Token> iterator() {
+        return new Iterator<>() {
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < count;
+            }
+
+            @Override
+            public Token next() {
+                if (index >= count) {
+                    throw new NoSuchElementException();
+                }
+                return get(index++);
+            }
+        };
+    }
+
+    /**
+     * 依次读取 TokenBuffer 中词法单元的游标, 读取过程不分配对象
+     */
+    public class Cursor {
+        private int index;
+        private final int end;
+
+        private Cursor(int begin, int end) {
+            this.index = begin - 1;
+            this.end = end;
+        }
+
+        /**
+         * 移动到下一个词法单元
+         *
+         * @return 是否还有词法单元
+         */
+        public boolean advance() {
+            if (index + 1 >= end) {
+                return false;
+            }
+            index++;
+            return true;
+        }
+
+        public boolean hasNext() {
+            return index + 1 < end;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public TokenKind getKind() {
+            return TokenBuffer.this.getKind(index);
+        }
+
+        public int getKindOrdinal() {
+            return kinds[index];
+        }
+
+        /**
+         * @return 常数的值, 超出 int 范围时为 {@link #UNPARSED}; 对于标识符则是其在标识符表中的下标
+         */
+        public int getValue() {
+            return value[index];
+        }
+
+        /**
+         * @return 词法单元的文本, 对于标识符不会构造新的 String
+         */
+        public String getText() {
+            return TokenBuffer.this.getText(index);
+        }
+
+        /**
+         * @return 当前词法单元对应的 Token 对象, 供只接受 Token 的代码使用
+         */
+        public Token toToken() {
+            return get(index);
+        }
+    }
+
+    private void add(int kind, int begin, int end, int tokenValue) {
+        if (count == kinds.length) {
+            final var capacity = count * 2;
+            kinds = Arrays.copyOf(kinds, capacity);
+            start = Arrays.copyOf(start, capacity);
+            length = Arrays.copyOf(length, capacity);
+            value = Arrays.copyOf(value, capacity);
+        }
+
+        kinds[count] = kind;
+        start[count] = begin;
+        length[count] = end - begin;
+        value[count] = tokenValue;
+        count++;
+    }
+
+    /**
+     * 释放各数组末尾未使用的空间
+     */
+    private void trimToSize() {
+        kinds = Arrays.copyOf(kinds, count);
+        start = Arrays.copyOf(start, count);
+        length = Arrays.copyOf(length, count);
+        value = Arrays.copyOf(value, count);
+    }
+
+    /**
+     * @return 常数的值, 超出 int 范围时为 {@link #UNPARSED}
+     */
+    private int parseInt(int begin, int end) {
+        var result = 0L;
+        for (int i = begin; i < end; i++) {
+            result = result * 10 + (source.charAt(i) - '0');
+            if (result > Integer.MAX_VALUE) {
+                return UNPARSED;
+            }
+        }
+        return (int) result;
+    }
+
+    /**
+     * 查找标识符, 若是第一次出现则构造 String
+     *
+     * @return 该标识符在标识符表中的下标
+     */
+    private int intern(int begin, int end) {
+        // 与 String.hashCode 的计算方式相同
+        var hash = 0;
+        for (int i = begin; i < end; i++) {
+            hash = 31 * hash + source.charAt(i);
+        }
+
+        final var mask = identifierSlots.length - 1;
+        var slot = spread(hash) & mask;
+        while (identifierSlots[slot] >= 0) {
+            final var candidate = identifiers[identifierSlots[slot]];
+            if (candidate.length() == end - begin && sameText(candidate, begin)) {
+                return identifierSlots[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        if (identifierCount == identifiers.length) {
+            identifiers = Arrays.copyOf(identifiers, identifierCount * 2);
+        }
+        identifiers[identifierCount] = source.subSequence(begin, end).toString();
+        identifierSlots[slot] = identifierCount;
+        identifierCount++;
+
+        // 装填因子超过 1/2 时扩容
+        if (identifierCount * 2 > identifierSlots.length) {
+            identifierSlots = newSlots(identifierSlots.length * 2);
+            final var newMask = identifierSlots.length - 1;
+            for (int index = 0; index < identifierCount; index++) {
+                var newSlot = spread(identifiers[index].hashCode()) & newMask;
+                while (identifierSlots[newSlot] >= 0) {
+                    newSlot = (newSlot + 1) & newMask;
+                }
+                identifierSlots[newSlot] = index;
+            }
+        }
+        return identifierCount - 1;
+    }
+
+    private boolean sameText(String text, int begin) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) != source.charAt(begin + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 打散 String.hashCode: 短标识符的哈希值集中在一小段连续的整数上, 直接取低位会在线性探测时连成很长的簇
+     * <br>
+     * {@link MappedLexicalAnalyzer} 的标识符表也以同样的方式探测
+     */
+    static int spread(int hash) {
+        final var mixed = hash * 0x9E3779B9;
+        return mixed ^ (mixed >>> 16);
+    }
+
+    private static int[] newSlots(int capacity) {
+        final var slots = new int[capacity];
+        Arrays.fill(slots, -1);
+        return slots;
+    }
+}
@@ -4,8 +4,11 @@ import cn.edu.hitsz.compiler.parser.table.Term;
 import cn.edu.hitsz.compiler.utils.FilePathConfig;
 import cn.edu.hitsz.compiler.utils.FileUtils;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -18,6 +21,9 @@ import java.util.Map;
  * TokenKind 类还作为终结符, 供表示语法及产生式的类使用. 这就是为什么它继承了 Term (语法项) 作为父类.
  * <br>
  * 如果你目前在完成实验, 那么只需要关注用于构造 TokenKind 的 fromString 与 eof, 用于获得信息的 getIdentifier 与 getCode 即可.
+ * <br>
+ * 读取码点文件时, 每个 TokenKind 还会按读取顺序被分配一个从 0 开始的稠密序号 (EOF 固定为 0), 可以通过 {@link #fromOrdinal}
+ * 与 {@link #fromCode} 以数组下标的方式找回对应的 TokenKind. 词法分析与语法分析的热路径使用序号, 而不必对标识符字符串求哈希.
  * 倘若你有空探寻一下代码的细致实现, 那么请详见代码中的实现注释, 并同时参考 SeeAlso 中的内容.
  * <br>
  *
@@ -28,7 +34,11 @@ import java.util.Map;
 public class TokenKind extends Term {
     // 允许用作 TokenKind 的 id 的字符串集合
     private static final Map<String, TokenKind> allowed = new HashMap<>();
-    private static final TokenKind eof = new TokenKind("$", -1);
+    private static final TokenKind eof = new TokenKind("$", -1, 0);
+
+    // 以序号为下标的 TokenKind, 以及以码点为下标的 TokenKind (码点为负的 EOF 不在其中)
+    private static TokenKind[] byOrdinal = {eof};
+    private static TokenKind[] byCode = new TokenKind[0];
 
     /**
      * 从码点文件中读取允许的标识符集合
@@ -39,6 +49,7 @@ public class TokenKind extends Term {
         }
 
         final var lines = FileUtils.readLines(FilePathConfig.CODING_MAP_PATH);
+        final var ordered = new ArrayList<TokenKind>(List.of(eof));
         for (final var line : lines) {
             // 码点文件每行形如:
             // 54 IntConst
@@ -47,11 +58,60 @@ public class TokenKind extends Term {
             final var code = Integer.parseInt(words[0]);
             final var id = words[1];
 
-            allowed.put(id, new TokenKind(id, code));
+            final var kind = new TokenKind(id, code, ordered.size());
+            allowed.put(id, kind);
+            ordered.add(kind);
         }
 
         // EOF
         allowed.put("$", eof);
+
+        final var maxCode = ordered.stream().mapToInt(TokenKind::getCode).max().orElse(-1);
+        final var codes = new TokenKind[maxCode + 1];
+        for (final var kind : ordered) {
+            if (kind.code >= 0) {
+                codes[kind.code] = kind;
+            }
+        }
+        byCode = codes;
+        byOrdinal = ordered.toArray(new TokenKind[0]);
+    }
+
+    /**
+     * @return TokenKind 的总数 (包括 EOF), 所有序号都小于该值
+     */
+    public static int ordinalCount() {
+        return byOrdinal.length;
+    }
+
+    /**
+     * @param ordinal 序号
+     * @return 该序号对应的 TokenKind
+     */
+    public static TokenKind fromOrdinal(int ordinal) {
+        return byOrdinal[ordinal];
+    }
+
+    /**
+     * @param code 码点
+     * @return 该码点对应的 TokenKind
+     * @throws RuntimeException 码点文件中没有该码点
+     */
+    public static TokenKind fromCode(int code) {
+        if (code == eof.code) {
+            return eof;
+        }
+        if (code < 0 || code >= byCode.length || byCode[code] == null) {
+            throw new RuntimeException("Illegal code " + code);
+        }
+        return byCode[code];
+    }
+
+    /**
+     * @return 以序号为下标的所有 TokenKind
+     */
+    public static List<TokenKind> allTokenKindsInOrdinalOrder() {
+        return Collections.unmodifiableList(Arrays.asList(byOrdinal));
     }
 
     /**
@@ -107,10 +167,19 @@ public class TokenKind extends Term {
         return code;
     }
 
-    private TokenKind(String id, int code) {
+    /**
+     * @return 获得该 TokenKind 的稠密序号
+     */
+    public int getOrdinal() {
+        return ordinal;
+    }
+
+    private TokenKind(String id, int code, int ordinal) {
         super(id);
         this.code = code;
+        this.ordinal = ordinal;
     }
 
     private final int code;
+    private final int ordinal;
 }
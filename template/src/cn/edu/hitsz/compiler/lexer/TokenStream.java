@@ -0,0 +1,177 @@
+package cn.edu.hitsz.compiler.lexer;
+
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * 流式词法分析器
+ * <br>
+ * 从文件通道中按需读取源代码到一个定长的字符缓冲区, 每次调用 {@link #next()} 时才识别出下一个词法单元.
+ * 缓冲区内只保留尚未被识别的部分, 因此内存占用与源代码长度无关. 识别出的标识符会在被读到时加入符号表.
+ * <br>
+ * 在源代码读完之后, 迭代器会再给出一个 EOF 词法单元, 随后结束.
+ *
+ * @see LexicalAnalysisAutomata 识别词法单元所用的自动机
+ */
+public class TokenStream implements Iterator<Token> {
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Reader reader;
+    private final SymbolTable symbolTable;
+
+    // 字符缓冲区, [pos, limit) 为已读入但还未被识别的部分
+    private char[] buffer = new char[BUFFER_SIZE];
+    private int pos = 0;
+    private int limit = 0;
+
+    // 文件是否已读完
+    private boolean endOfInput = false;
+    // EOF 词法单元是否已经给出
+    private boolean finished = false;
+
+    /**
+     * @param path        源代码路径
+     * @param symbolTable 识别出标识符时要更新的符号表
+     */
+    public TokenStream(String path, SymbolTable symbolTable) {
+        try {
+            this.reader = Channels.newReader(FileChannel.open(Paths.get(path)), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception on " + path, e);
+        }
+        this.symbolTable = symbolTable;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !finished;
+    }
+
+    @Override
+    public Token next() {
+        if (finished) {
+            throw new NoSuchElementException();
+        }
+
+        final var token = scan();
+        if (token == null) {
+            finished = true;
+            close();
+            return Token.eof();
+        }
+        return token;
+    }
+
+    /**
+     * 识别下一个词法单元
+     *
+     * @return 词法单元; 若源代码已读完则返回 null
+     */
+    private Token scan() {
+        while (true) {
+            if (pos == limit && !fill()) {
+                return null;
+            }
+
+            // 按最长匹配运行自动机
+            var state = LexicalAnalysisAutomata.START;
+            var acceptState = LexicalAnalysisAutomata.DEAD;
+            var acceptEnd = pos;
+            var reachLimit = false;
+            for (int i = pos; ; i++) {
+                if (i == limit) {
+                    reachLimit = !endOfInput;
+                    break;
+                }
+                state = LexicalAnalysisAutomata.step(state, buffer[i]);
+                if (state == LexicalAnalysisAutomata.DEAD) {
+                    break;
+                }
+                if (LexicalAnalysisAutomata.isAccepting(state)) {
+                    acceptState = state;
+                    acceptEnd = i + 1;
+                }
+            }
+
+            // 词法单元可能跨越了缓冲区的末尾, 读入更多内容后重新识别
+            if (reachLimit) {
+                fill();
+                continue;
+            }
+
+            // 无法识别的字符 (如空白) 直接跳过
+            if (acceptState == LexicalAnalysisAutomata.DEAD) {
+                pos++;
+                continue;
+            }
+
+            final var begin = pos;
+            pos = acceptEnd;
+            return makeToken(acceptState, begin, acceptEnd);
+        }
+    }
+
+    private Token makeToken(int acceptState, int begin, int end) {
+        final var kind = LexicalAnalysisAutomata.acceptKind(acceptState);
+        // 只有标识符和常数需要带上文本
+        if (LexicalAnalysisAutomata.hasText(acceptState)) {
+            final var text = new String(buffer, begin, end - begin);
+            if (LexicalAnalysisAutomata.isIdentifier(acceptState) && !symbolTable.has(text)) {
+                symbolTable.add(text);
+            }
+            return Token.normal(kind, text);
+        }
+        return Token.simple(kind);
+    }
+
+    /**
+     * 将未识别的部分移到缓冲区开头, 再从文件中读入更多内容
+     *
+     * @return 是否读入了新的内容
+     */
+    private boolean fill() {
+        if (endOfInput) {
+            return false;
+        }
+
+        if (pos > 0) {
+            System.arraycopy(buffer, pos, buffer, 0, limit - pos);
+            limit -= pos;
+            pos = 0;
+        }
+        // 单个词法单元比整个缓冲区还长时才扩容
+        if (limit == buffer.length) {
+            final var larger = new char[buffer.length * 2];
+            System.arraycopy(buffer, 0, larger, 0, limit);
+            buffer = larger;
+        }
+
+        try {
+            final var count = reader.read(buffer, limit, buffer.length - limit);
+            if (count < 0) {
+                endOfInput = true;
+                return false;
+            }
+            limit += count;
+            return true;
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception when reading source code", e);
+        }
+    }
+
+    private void close() {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception when closing source code", e);
+        }
+    }
+}
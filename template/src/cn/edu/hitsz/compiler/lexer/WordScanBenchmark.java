@@ -0,0 +1,110 @@
+package cn.edu.hitsz.compiler.lexer;
+
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * 比较 {@link MappedLexicalAnalyzer} 按字扫描 ({@link MappedLexicalAnalyzer#setWordScan}) 与逐字节扫描的结果与速度
+ * <br>
+ * 先检查两种扫描方式输出的词法单元与符号表逐字节相同, 输入包括:
+ * <ul>
+ *     <li>data/in/word-scan-fuzz.txt, 即 {@link LexerWorkloads#fuzz} 以种子 0 生成的 16KB 模糊输入</li>
+ *     <li>以其他种子生成的若干个大小各异的模糊输入</li>
+ *     <li>下面计时用的各个输入</li>
+ * </ul>
+ * 再对每个输入交替计时若干轮, 输出两种方式的最好成绩:
+ * <ul>
+ *     <li>{@link LexerWorkloads#statements}: 短标识符, 单个空格</li>
+ *     <li>{@link LexerWorkloads#longRuns}: 最长 8 个与 32 个空格的空白, 16 到 47 个字符的标识符</li>
+ * </ul>
+ * 在 template 目录下运行 (需要读取码点文件与模糊输入), 结果不同时抛出异常:
+ * <pre>{@code
+ * java cn.edu.hitsz.compiler.lexer.WordScanBenchmark [每个计时输入的 MB 数, 默认 60] [轮数, 默认 6] [模糊输入个数, 默认 200]
+ * }</pre>
+ */
+public final class WordScanBenchmark {
+    private static final String FUZZ_FILE = "data/in/word-scan-fuzz.txt";
+
+    private WordScanBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        final var megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 60;
+        final var rounds = args.length > 1 ? Integer.parseInt(args[1]) : 6;
+        final var fuzzCount = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+
+        TokenKind.loadTokenKinds();
+        final var directory = Files.createTempDirectory("word-scan");
+        try {
+            checkSame(Path.of(FUZZ_FILE), directory);
+            for (int seed = 1; seed <= fuzzCount; seed++) {
+                final var path = directory.resolve("fuzz.txt");
+                Files.writeString(path, LexerWorkloads.fuzz(seed, 1 + seed * 97 % 20000));
+                checkSame(path, directory);
+            }
+            System.out.printf("word scan identical on %s and %d fuzz inputs%n", FUZZ_FILE, fuzzCount);
+
+            final var length = megabytes << 20;
+            final var statements = directory.resolve("statements.txt");
+            Files.writeString(statements, LexerWorkloads.statements(1, length / 40));
+            measure("statements", statements, directory, rounds);
+            for (final var maxRun : new int[]{8, 32}) {
+                final var longRuns = directory.resolve("long-runs-" + maxRun + ".txt");
+                Files.writeString(longRuns, LexerWorkloads.longRuns(1, length, maxRun));
+                measure("long runs (whitespace up to %d)".formatted(maxRun), longRuns, directory, rounds);
+                Files.delete(longRuns);
+            }
+        } finally {
+            try (final var paths = Files.list(directory)) {
+                for (final var path : paths.toList()) {
+                    Files.delete(path);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+
+    /**
+     * 以两种方式分析同一个文件, 输出的词法单元与符号表必须逐字节相同
+     */
+    private static void checkSame(Path source, Path directory) throws IOException {
+        final var dumps = new byte[2][][];
+        for (int mode = 0; mode < 2; mode++) {
+            final var symbolTable = new SymbolTable();
+            final var lexer = new MappedLexicalAnalyzer(symbolTable);
+            lexer.setWordScan(mode == 1);
+            lexer.loadFile(source.toString());
+            lexer.run();
+            final var tokenPath = directory.resolve("tokens-" + mode + ".txt");
+            final var symbolPath = directory.resolve("symbols-" + mode + ".txt");
+            lexer.dumpTokens(tokenPath.toString());
+            symbolTable.dumpTable(symbolPath.toString());
+            dumps[mode] = new byte[][]{Files.readAllBytes(tokenPath), Files.readAllBytes(symbolPath)};
+        }
+        if (!Arrays.equals(dumps[0][0], dumps[1][0]) || !Arrays.equals(dumps[0][1], dumps[1][1])) {
+            throw new RuntimeException("Word scan differs from the byte scan on " + source);
+        }
+    }
+
+    private static void measure(String name, Path source, Path directory, int rounds) throws IOException {
+        checkSame(source, directory);
+        final var bytes = Files.size(source);
+        final var best = new long[]{Long.MAX_VALUE, Long.MAX_VALUE};
+        for (int round = 0; round < rounds; round++) {
+            for (int mode = 0; mode < 2; mode++) {
+                final var lexer = new MappedLexicalAnalyzer(new SymbolTable());
+                lexer.setWordScan(mode == 1);
+                lexer.loadFile(source.toString());
+                final var begin = System.nanoTime();
+                lexer.run();
+                best[mode] = Math.min(best[mode], System.nanoTime() - begin);
+            }
+        }
+        System.out.printf("%s, %.1f MB: byte scan %.0f ms, word scan %.0f ms, speedup %.2fx%n",
+            name, bytes / 1e6, best[0] / 1e6, best[1] / 1e6, (double) best[0] / best[1]);
+    }
+}
@@ -2,6 +2,7 @@ package cn.edu.hitsz.compiler.parser;
 
 
 import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenBuffer;
 import cn.edu.hitsz.compiler.parser.table.Production;
 import cn.edu.hitsz.compiler.parser.table.Status;
 import cn.edu.hitsz.compiler.symtab.SymbolTable;
@@ -32,6 +33,19 @@ public interface ActionObserver {
      */
     void whenShift(Status currentStatus, Token currentToken);
 
+    /**
+     * 当驱动程序从 {@link TokenBuffer} 中读取词法单元并执行 Shift 动作时会调用此函数.
+     * <br>
+     * 默认实现会构造出对应的 Token 并调用 {@link #whenShift(Status, Token)}; 观察者可以覆盖此函数,
+     * 直接通过游标读取词法单元的类型与值, 从而避免为每个词法单元分配对象. 游标只在本次调用期间有效.
+     *
+     * @param currentStatus 当前的状态
+     * @param cursor        指向当前词法单元的游标
+     */
+    default void whenShift(Status currentStatus, TokenBuffer.Cursor cursor) {
+        whenShift(currentStatus, cursor.toToken());
+    }
+
     /**
      * 当驱动程序执行 Reduce 动作时会调用此函数. Goto 到的新状态可以直接从参数中获取:
      * {@code currentStatus.getGoto(production.head()) }
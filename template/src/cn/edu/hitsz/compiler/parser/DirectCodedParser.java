@@ -0,0 +1,229 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenBuffer;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.table.BinaryLRTable;
+import cn.edu.hitsz.compiler.parser.table.GrammarInfo;
+import cn.edu.hitsz.compiler.parser.table.ParserSourceGenerator;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.parser.table.Status;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * 直接编码 (direct-coded) 的 LR 语法分析驱动程序的基类
+ * <br>
+ * 子类由 {@link ParserSourceGenerator} 根据分析表生成: 每个状态的 ACTION 行是一个以终结符序号为分支的 switch,
+ * 每条产生式的规约是直接弹出固定个数栈槽的代码, 分析时不再查询 Status, Action 或 LRTable.
+ * <br>
+ * 整个自动机生成为一个方法, 状态栈与当前词法单元都是其局部变量; 本类只负责词法单元的读取,
+ * 并在移入, 规约, 接受时以与 {@link SyntaxAnalyzer} 相同的方式通知各观察者.
+ * 生成的代码以终结符序号与产生式行号编码分析表, 构造时会检查语法文件与码点文件是否在生成之后被修改过.
+ *
+ * @see ParserSourceGenerator
+ */
+public abstract class DirectCodedParser {
+    private final SymbolTable symbolTable;
+    private final List<ActionObserver> observers = new ArrayList<>();
+    private ObserverDispatch dispatch;
+
+    // 以行号为下标的产生式, 以状态编号为下标的状态, 后者在第一次用到时才构造
+    private final Production[] productions;
+    private final Status[] statuses;
+
+    private Iterator<Token> tokenIterator;
+    private TokenBuffer.Cursor tokenCursor;
+    private Token currentToken;
+
+    /**
+     * @param symbolTable 符号表
+     * @param stateCount  状态数
+     * @param grammarHash 生成时的语法哈希 ({@link BinaryLRTable#grammarHash()}), 与当前文件计算得到的不一致时拒绝构造
+     * @param productions 生成时的各产生式, 以行号为下标, 没有对应产生式的下标为 null
+     * @param terminals   生成时的各终结符, 以终结符序号为下标
+     */
+    protected DirectCodedParser(SymbolTable symbolTable, int stateCount, long grammarHash,
+                                String[] productions, String[] terminals) {
+        this.symbolTable = symbolTable;
+        this.statuses = new Status[stateCount];
+
+        // 只比较生成时记录的产生式无法发现之后追加的产生式, 因此先比较整个语法文件与码点文件的哈希
+        if (grammarHash != BinaryLRTable.grammarHash()) {
+            throw new RuntimeException("Grammar or coding map changed since the parser was generated");
+        }
+
+        final var kinds = TokenKind.allTokenKindsInOrdinalOrder();
+        if (kinds.size() != terminals.length) {
+            throw new RuntimeException("Coding map changed since the parser was generated");
+        }
+        for (int ordinal = 0; ordinal < terminals.length; ordinal++) {
+            if (!kinds.get(ordinal).getIdentifier().equals(terminals[ordinal])) {
+                throw new RuntimeException("Coding map changed since the parser was generated");
+            }
+        }
+
+        this.productions = new Production[productions.length];
+        for (final var production : GrammarInfo.getProductionsInOrder()) {
+            if (production.index() < productions.length && production.toString().equals(productions[production.index()])) {
+                this.productions[production.index()] = production;
+            }
+        }
+        for (int index = 0; index < productions.length; index++) {
+            if (productions[index] != null && this.productions[index] == null) {
+                throw new RuntimeException("Grammar changed since the parser was generated: " + productions[index]);
+            }
+        }
+    }
+
+    /**
+     * 注册新的观察者
+     *
+     * @param observer 观察者
+     */
+    public void registerObserver(ActionObserver observer) {
+        observers.add(observer);
+        observer.setSymbolTable(symbolTable);
+        dispatch = null;
+    }
+
+    public void loadTokens(Iterable<Token> tokens) {
+        loadTokens(tokens.iterator());
+    }
+
+    /**
+     * 加载按需给出的词法单元流
+     *
+     * @param tokens 词法单元迭代器, 最后一个词法单元应为 EOF
+     */
+    public void loadTokens(Iterator<Token> tokens) {
+        tokenIterator = tokens;
+        tokenCursor = null;
+    }
+
+    /**
+     * 加载按列存储的词法单元序列
+     *
+     * @param tokens 词法单元序列
+     */
+    public void loadTokens(TokenBuffer tokens) {
+        tokenIterator = null;
+        tokenCursor = tokens.cursor();
+    }
+
+    /**
+     * 执行语法分析, 由生成的代码实现
+     */
+    public abstract void run();
+
+    /**
+     * 读入下一个词法单元
+     *
+     * @return 其终结符序号
+     */
+    protected final int nextToken() {
+        if (tokenCursor != null) {
+            if (!tokenCursor.hasNext()) {
+                throw new SyntaxErrorException("Unexpected end of tokens");
+            }
+            tokenCursor.advance();
+            return tokenCursor.getKindOrdinal();
+        } else {
+            if (!tokenIterator.hasNext()) {
+                throw new SyntaxErrorException("Unexpected end of tokens");
+            }
+            currentToken = tokenIterator.next();
+            return currentToken.getKind().getOrdinal();
+        }
+    }
+
+    /**
+     * 移入当前词法单元后通知观察者
+     *
+     * @param state 移入后的状态
+     */
+    protected final void shifted(int state) {
+        final var dispatch = getDispatch();
+        if (tokenCursor != null) {
+            final var handlers = dispatch.shiftHandlers(tokenCursor.getKindOrdinal());
+            if (handlers.length > 0) {
+                final var status = getStatus(state);
+                for (final var handler : handlers) {
+                    handler.handle(status, tokenCursor);
+                }
+            }
+        } else {
+            final var handlers = dispatch.shiftHandlers(currentToken.getKind().getOrdinal());
+            if (handlers.length > 0) {
+                final var status = getStatus(state);
+                for (final var handler : handlers) {
+                    handler.handle(status, currentToken);
+                }
+            }
+        }
+    }
+
+    /**
+     * 规约后通知观察者
+     *
+     * @param state      goto 到的状态
+     * @param production 产生式行号
+     */
+    protected final void reduced(int state, int production) {
+        // 没有处理函数的产生式不需要构造 Status
+        final var handlers = getDispatch().reduceHandlers(production);
+        if (handlers.length > 0) {
+            final var status = getStatus(state);
+            for (final var handler : handlers) {
+                handler.handle(status, productions[production]);
+            }
+        }
+    }
+
+    /**
+     * 接受时通知观察者
+     *
+     * @param state 当前状态
+     */
+    protected final void accepted(int state) {
+        final var status = getStatus(state);
+        for (final var listener : observers) {
+            listener.whenAccept(status);
+        }
+    }
+
+    /**
+     * @param token 当前词法单元的终结符序号
+     * @param state 当前状态
+     * @return 对应的语法错误, 由调用者抛出
+     */
+    protected static SyntaxErrorException error(int token, int state) {
+        return new SyntaxErrorException("Syntax error at %s in status %d".formatted(TokenKind.fromOrdinal(token), state));
+    }
+
+    /**
+     * @param stack 已满的状态栈
+     * @return 扩容后的状态栈
+     */
+    protected static int[] grow(int[] stack) {
+        return Arrays.copyOf(stack, stack.length * 2);
+    }
+
+    private ObserverDispatch getDispatch() {
+        if (dispatch == null) {
+            dispatch = new ObserverDispatch(observers);
+        }
+        return dispatch;
+    }
+
+    private Status getStatus(int state) {
+        if (statuses[state] == null) {
+            statuses[state] = Status.create(state);
+        }
+        return statuses[state];
+    }
+}
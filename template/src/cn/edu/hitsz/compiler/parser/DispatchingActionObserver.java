@@ -0,0 +1,146 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenBuffer;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.parser.table.Status;
+
+import java.util.Arrays;
+
+/**
+ * 按产生式与词法单元类型分派动作的观察者
+ * <br>
+ * 普通的 {@link ActionObserver} 在每次规约时都会被调用, 再自己按 production.index() 分派, 即使大部分产生式只是弹出又压入占位元素.
+ * 继承此类的观察者在构造时以 {@link #onReduce} 与 {@link #onShift} 为关心的产生式 (以行号标识) 与终结符登记处理函数,
+ * 驱动程序在注册观察者时将所有观察者的处理函数预先整理为以产生式行号和终结符序号为下标的数组, 分析时只调用已登记的处理函数;
+ * 某个观察者没有登记的产生式或终结符, 对它而言不产生任何调用.
+ * <br>
+ * 因此观察者只能在自己的栈中保存登记了处理函数的那些符号的属性, 没有登记的符号不会在栈中占位.
+ * <br>
+ * 不支持按表分派的驱动程序仍会调用 whenShift 与 whenReduce, 此时它们会查询同样的处理函数, 所以两种驱动程序下的行为相同.
+ *
+ * @see ObserverDispatch
+ */
+public abstract class DispatchingActionObserver implements ActionObserver {
+    /**
+     * 规约时的处理函数
+     */
+    @FunctionalInterface
+    public interface ReduceHandler {
+        /**
+         * @param currentStatus goto 到的状态
+         * @param production    待规约的产生式
+         */
+        void handle(Status currentStatus, Production production);
+    }
+
+    /**
+     * 移入时的处理函数
+     * <br>
+     * 驱动程序从 {@link TokenBuffer} 中读取词法单元时会调用以游标为参数的版本, 默认实现会构造出对应的 Token;
+     * 需要避免分配对象的处理函数应同时覆盖它.
+     */
+    @FunctionalInterface
+    public interface ShiftHandler {
+        /**
+         * @param currentStatus 移入后的状态
+         * @param currentToken  当前的词法单元
+         */
+        void handle(Status currentStatus, Token currentToken);
+
+        /**
+         * @param currentStatus 移入后的状态
+         * @param cursor        指向当前词法单元的游标, 只在本次调用期间有效
+         */
+        default void handle(Status currentStatus, TokenBuffer.Cursor cursor) {
+            handle(currentStatus, cursor.toToken());
+        }
+    }
+
+    // 以产生式行号为下标的规约处理函数, 以终结符序号为下标的移入处理函数, 没有登记的为 null
+    private ReduceHandler[] reduceHandlers = new ReduceHandler[0];
+    private ShiftHandler[] shiftHandlers = new ShiftHandler[0];
+
+    /**
+     * 为某条产生式登记规约时的处理函数
+     *
+     * @param productionIndex 产生式在语法文件中的行号
+     * @param handler         处理函数
+     * @throws RuntimeException 该产生式已经登记过处理函数
+     */
+    protected final void onReduce(int productionIndex, ReduceHandler handler) {
+        if (productionIndex >= reduceHandlers.length) {
+            reduceHandlers = Arrays.copyOf(reduceHandlers, productionIndex + 1);
+        }
+        if (reduceHandlers[productionIndex] != null) {
+            throw new RuntimeException("Duplicate reduce handler for production " + productionIndex);
+        }
+        reduceHandlers[productionIndex] = handler;
+    }
+
+    /**
+     * 为某种终结符登记移入时的处理函数, 码点文件必须已经被读取
+     *
+     * @param tokenKindId 终结符的标识符
+     * @param handler     处理函数
+     * @throws RuntimeException 该终结符已经登记过处理函数
+     */
+    protected final void onShift(String tokenKindId, ShiftHandler handler) {
+        final var ordinal = TokenKind.fromString(tokenKindId).getOrdinal();
+        if (ordinal >= shiftHandlers.length) {
+            shiftHandlers = Arrays.copyOf(shiftHandlers, ordinal + 1);
+        }
+        if (shiftHandlers[ordinal] != null) {
+            throw new RuntimeException("Duplicate shift handler for " + tokenKindId);
+        }
+        shiftHandlers[ordinal] = handler;
+    }
+
+    /**
+     * @param productionIndex 产生式行号
+     * @return 该产生式的规约处理函数, 没有登记时为 null
+     */
+    public final ReduceHandler getReduceHandler(int productionIndex) {
+        return productionIndex < reduceHandlers.length ? reduceHandlers[productionIndex] : null;
+    }
+
+    /**
+     * @param ordinal 终结符序号
+     * @return 该终结符的移入处理函数, 没有登记时为 null
+     */
+    public final ShiftHandler getShiftHandler(int ordinal) {
+        return ordinal < shiftHandlers.length ? shiftHandlers[ordinal] : null;
+    }
+
+    /**
+     * @return 登记过处理函数的最大产生式行号加一
+     */
+    final int reduceHandlerLimit() {
+        return reduceHandlers.length;
+    }
+
+    @Override
+    public final void whenShift(Status currentStatus, Token currentToken) {
+        final var handler = getShiftHandler(currentToken.getKind().getOrdinal());
+        if (handler != null) {
+            handler.handle(currentStatus, currentToken);
+        }
+    }
+
+    @Override
+    public final void whenShift(Status currentStatus, TokenBuffer.Cursor cursor) {
+        final var handler = getShiftHandler(cursor.getKindOrdinal());
+        if (handler != null) {
+            handler.handle(currentStatus, cursor);
+        }
+    }
+
+    @Override
+    public final void whenReduce(Status currentStatus, Production production) {
+        final var handler = getReduceHandler(production.index());
+        if (handler != null) {
+            handler.handle(currentStatus, production);
+        }
+    }
+}
@@ -0,0 +1,668 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+/**
+ * 由 ParserSourceGenerator 根据 LR 分析表生成的语法分析程序, 不要手动修改此文件
+ */
+public class GeneratedParser extends DirectCodedParser {
+    // 生成时的语法哈希, 产生式 (以行号为下标) 与终结符 (以序号为下标), 用于检查语法文件与码点文件是否被修改过
+    private static final long GRAMMAR_HASH = 0xf0934b8b0eca8749L;
+    private static final String[] PRODUCTIONS = {
+        null,
+        null,
+        "S_list -> S Semicolon S_list",
+        "S_list -> S Semicolon",
+        "S -> D id",
+        "D -> int",
+        "S -> id = E",
+        "S -> return E",
+        "E -> E + A",
+        "E -> E - A",
+        "E -> A",
+        "A -> A * B",
+        "A -> B",
+        "B -> ( E )",
+        "B -> id",
+        "B -> IntConst",
+    };
+    private static final String[] TERMINALS = {
+        "$",
+        "int",
+        "return",
+        "=",
+        ",",
+        "Semicolon",
+        "+",
+        "-",
+        "*",
+        "/",
+        "(",
+        ")",
+        "id",
+        "IntConst",
+    };
+
+    public GeneratedParser(SymbolTable symbolTable) {
+        super(symbolTable, 39, GRAMMAR_HASH, PRODUCTIONS, TERMINALS);
+    }
+
+    @Override
+    public void run() {
+        var stack = new int[64];
+        var top = 0;
+        var state = 0;
+        stack[top] = state;
+        var token = nextToken();
+        while (true) {
+            // 移入时为 -1, 规约时为产生式行号
+            int production;
+            switch (state) {
+                case 0 -> {
+                    switch (token) {
+                        case 1 -> { // int
+                            state = 5;
+                            production = -1;
+                        }
+                        case 2 -> { // return
+                            state = 6;
+                            production = -1;
+                        }
+                        case 12 -> { // id
+                            state = 4;
+                            production = -1;
+                        }
+                        default -> throw error(token, state);
+                    }
+                }
+                case 1 -> {
+                    switch (token) {
+                        case 0 -> { // $
+                            accepted(state);
+                            return;
+                        }
+                        default -> throw error(token, state);
+                    }
+                }
+                case 2 -> {
+                    switch (token) {
+                        case 5 -> { // Semicolon
+                            state = 7;
+                            production = -1;
+                        }
+                        default -> throw error(token, state);
+                    }
+                }
+                case 3 -> {
+                    switch (token) {
+                        case 12 -> { // id
+                            state = 8;
+                            production = -1;
+                        }
+                        default -> throw error(token, state);
+                    }
+                }
+                case 4 -> {
+                    switch (token) {
+                        case 3 -> { // =
+                            state = 9;
+                            production = -1;
+                        }
+                        default -> throw error(token, state);
+                    }
+                }
+                case 5 -> {
+                    switch (token) {
+                        case 12 -> { // id
+                            // D -> int
+                            top -= 1;
+                            state = 3;
+                            production = 5;
+                        }
+                        default -> throw error(token, state);
+                    }
+                }
+                case 6 -> {
+                    switch (token) {
+                        case 10 -> { // (
+                            state = 14;
+                            production = -1;
+                        }
+                        case 12 -> { // id
+                            state = 13;
+                            production = -1;
+                        }
+                        case 13 -> { // IntConst
+                            state = 15;
+                            production = -1;
+                        }
+                        default -> throw error(token, state);
+                    }
+                }
+                case 7 -> {
+                    switch (token) {
+                        case 0 -> { // $
+                            // S_list -> S Semicolon
+                            top -= 2;
+                            state = goto1(stack[top]);
+                            production = 3;
+                        }
+                        case 1 -> { // int
+                            state = 5;
+                            production = -1;
+                        }
+                        case 2 -> { // return
+                            state = 6;
+                            production = -1;
+                        }
+                        case 12 -> { // id
+                            state = 4;
+                            production = -1;
+                        }
+                        default -> throw error(token, state);
+                    }
+                }
+                case 8 -> {
+                    switch (token) {
+                        case 5 -> { // Semicolon
+                            // S -> D id
+                            top -= 2;
+                            state = 2;
+                            production = 4;
+                        }
+                        default -> throw error(token, state);
+                    }
+                }
+                case 9 -> {
+                    switch (token) {
+                        case 10 -> { // (
+                            state = 14;
+                            production = -1;
+                        }
+                        case 12 -> { // id
+                            state = 13;
+                            production = -1;
+                        }
+                        case 13 -> { // IntConst
+                            state = 15;
+                            production = -1;
+                        }
+                        default -> throw error(token, state);
+                    }
+                }
+                case 10 -> {
+                    switch (token) {
+                        case 5 -> { // Semicolon
+                            // S -> return E
+                            top -= 2;
+                            state = 2;
+                            production = 7;
+                        }
+                        case 6 -> { // +
+                            state = 18;
+                            production = -1;
+                        }
+                        case 7 -> { // -
+                            state = 19;
+                            production = -1;
+                        }
+                        default -> throw error(token, state);
+                    }
+                }
+                case 11 -> {
+                    switch (token) {
+                        case 5, 6, 7 -> { // Semicolon + -
+                            // E -> A
+                            top -= 1;
+                            state = goto0(stack[top]);
+                            production = 10;
+                        }
+                        case 8 -> { // *
+                            state = 20;
+                            production = -1;
+                        }
+                        default -> throw error(token, state);
+                    }
+                }
+                case 12 -> {
+                    switch (token) {
+                        case 5, 6, 7, 8 -> { // Semicolon + - *
+                            // A -> B
+                            top -= 1;
+                            state = goto3(stack[top]);
+                            production = 12;
+                        }
+                        default -> throw error(token, state);
+                    }
+                }
+                case 13 -> {
+                    switch (token) {
+                        case 5, 6, 7, 8 -> { // Semicolon + - *
+                            // B -> id
+                            top -= 1;
+                            state = goto4(stack[top]);
+                            production = 14;
+                        }
+                        default -> throw error(token, state);
+                    }
+                }
+                case 14 -> {
+                    switch (token) {
+                        case 10 -> { // (
+                            state = 25;
+                            production = -1;
+                        }
+                        case 12 -> { // id
+                            state = 24;
+                            production = -1;
+                        }
+                        case 13 -> { // IntConst
+                            state = 26;
+                            production = -1;
+                        }
+                        default -> throw error(token, state);
+                    }
+                }
+                case 15 -> {
+                    switch (token) {
+                        case 5, 6, 7, 8 -> { // Semicolon + - *
+                            // B -> IntConst
+                            top -= 1;
+                            state = goto4(stack[top]);
+                            production = 15;
+                        }
+                        default -> throw error(token, state);
+                    }
+                }
+                case 16 -> {
+                    switch (token) {
+                        case 0 -> { // $
+                            // S_list -> S Semicolon S_list
+                            top -= 3;
+                            state = goto1(stack[top]);
+                            production = 2;
+                        }
+                        default -> throw error(token, state);
+                    }
+                }
+                case 17 -> {
+                    switch (token) {
+                        case 5 -> { // Semicolon
+                            // S -> id = E
+                            top -= 3;
+                            state = 2;
+                            production = 6;
+                        }
+                        case 6 -> { // +
+                            state = 18;
+                            production = -1;
+                        }
+                        case 7 -> { // -
+                            state = 19;
+                            production = -1;
+                        }
+                        default -> throw error(token, state);
+                    }
+                }
+                case 18 -> {
+                    switch (token) {
+                        case 10 -> { // (
+                            state = 14;
+                            production = -1;
+                        }
+                        case 12 -> { // id
+                            state = 13;
+                            production = -1;
+                        }
+                        case 13 -> { // IntConst
+                            state = 15;
+                            production = -1;
+                        }
+                        default -> throw error(token, state);
+                    }
+                }
+                case 19 -> {
+                    switch (token) {
+                        case 10 -> { // (
+                            state = 14;
+                            production = -1;
+                        }
+                        case 12 -> { // id
+                            state = 13;
+                            production = -1;
+                        }
+                        case 13 -> { // IntConst
+                            state = 15;
+                            production = -1;
+                        }
+                        default -> throw error(token, state);
+                    }
+                }
+                case 20 -> {
+                    switch (token) {
+                        case 10 -> { // (
+                            state = 14;
+                            production = -1;
+                        }
+                        case 12 -> { // id
+                            state = 13;
+                            production = -1;
+                        }
+                        case 13 -> { // IntConst
+                            state = 15;
+                            production = -1;
+                        }
+                        default -> throw error(token, state);
+                    }
+                }
+                case 21 -> {
+                    switch (token) {
+                        case 6 -> { // +
+                            state = 31;
+                            production = -1;
+                        }
+                        case 7 -> { // -
+                            state = 32;
+                            production = -1;
+                        }
+                        case 11 -> { // )
+                            state = 30;
+                            production = -1;
+                        }
+                        default -> throw error(token, state);
+                    }
+                }
+                case 22 -> {
+                    switch (token) {
+                        case 6, 7, 11 -> { // + - )
+                            // E -> A
+                            top -= 1;
+                            state = goto0(stack[top]);
+                            production = 10;
+                        }
+                        case 8 -> { // *
+                            state = 33;
+                            production = -1;
+                        }
+                        default -> throw error(token, state);
+                    }
+                }
+                case 23 -> {
+                    switch (token) {
+                        case 6, 7, 8, 11 -> { // + - * )
+                            // A -> B
+                            top -= 1;
+                            state = goto3(stack[top]);
+                            production = 12;
+                        }
+                        default -> throw error(token, state);
+                    }
+                }
+                case 24 -> {
+                    switch (token) {
+                        case 6, 7, 8, 11 -> { // + - * )
+                            // B -> id
+                            top -= 1;
+                            state = goto4(stack[top]);
+                            production = 14;
+                        }
+                        default -> throw error(token, state);
+                    }
+                }
+                case 25 -> {
+                    switch (token) {
+                        case 10 -> { // (
+                            state = 25;
+                            production = -1;
+                        }
+                        case 12 -> { // id
+                            state = 24;
+                            production = -1;
+                        }
+                        case 13 -> { // IntConst
+                            state = 26;
+                            production = -1;
+                        }
+                        default -> throw error(token, state);
+                    }
+                }
+                case 26 -> {
+                    switch (token) {
+                        case 6, 7, 8, 11 -> { // + - * )
+                            // B -> IntConst
+                            top -= 1;
+                            state = goto4(stack[top]);
+                            production = 15;
+                        }
+                        default -> throw error(token, state);
+                    }
+                }
+                case 27 -> {
+                    switch (token) {
+                        case 5, 6, 7 -> { // Semicolon + -
+                            // E -> E + A
+                            top -= 3;
+                            state = goto0(stack[top]);
+                            production = 8;
+                        }
+                        case 8 -> { // *
+                            state = 20;
+                            production = -1;
+                        }
+                        default -> throw error(token, state);
+                    }
+                }
+                case 28 -> {
+                    switch (token) {
+                        case 5, 6, 7 -> { // Semicolon + -
+                            // E -> E - A
+                            top -= 3;
+                            state = goto0(stack[top]);
+                            production = 9;
+                        }
+                        case 8 -> { // *
+                            state = 20;
+                            production = -1;
+                        }
+                        default -> throw error(token, state);
+                    }
+                }
+                case 29 -> {
+                    switch (token) {
+                        case 5, 6, 7, 8 -> { // Semicolon + - *
+                            // A -> A * B
+                            top -= 3;
+                            state = goto3(stack[top]);
+                            production = 11;
+                        }
+                        default -> throw error(token, state);
+                    }
+                }
+                case 30 -> {
+                    switch (token) {
+                        case 5, 6, 7, 8 -> { // Semicolon + - *
+                            // B -> ( E )
+                            top -= 3;
+                            state = goto4(stack[top]);
+                            production = 13;
+                        }
+                        default -> throw error(token, state);
+                    }
+                }
+                case 31 -> {
+                    switch (token) {
+                        case 10 -> { // (
+                            state = 25;
+                            production = -1;
+                        }
+                        case 12 -> { // id
+                            state = 24;
+                            production = -1;
+                        }
+                        case 13 -> { // IntConst
+                            state = 26;
+                            production = -1;
+                        }
+                        default -> throw error(token, state);
+                    }
+                }
+                case 32 -> {
+                    switch (token) {
+                        case 10 -> { // (
+                            state = 25;
+                            production = -1;
+                        }
+                        case 12 -> { // id
+                            state = 24;
+                            production = -1;
+                        }
+                        case 13 -> { // IntConst
+                            state = 26;
+                            production = -1;
+                        }
+                        default -> throw error(token, state);
+                    }
+                }
+                case 33 -> {
+                    switch (token) {
+                        case 10 -> { // (
+                            state = 25;
+                            production = -1;
+                        }
+                        case 12 -> { // id
+                            state = 24;
+                            production = -1;
+                        }
+                        case 13 -> { // IntConst
+                            state = 26;
+                            production = -1;
+                        }
+                        default -> throw error(token, state);
+                    }
+                }
+                case 34 -> {
+                    switch (token) {
+                        case 6 -> { // +
+                            state = 31;
+                            production = -1;
+                        }
+                        case 7 -> { // -
+                            state = 32;
+                            production = -1;
+                        }
+                        case 11 -> { // )
+                            state = 38;
+                            production = -1;
+                        }
+                        default -> throw error(token, state);
+                    }
+                }
+                case 35 -> {
+                    switch (token) {
+                        case 6, 7, 11 -> { // + - )
+                            // E -> E + A
+                            top -= 3;
+                            state = goto0(stack[top]);
+                            production = 8;
+                        }
+                        case 8 -> { // *
+                            state = 33;
+                            production = -1;
+                        }
+                        default -> throw error(token, state);
+                    }
+                }
+                case 36 -> {
+                    switch (token) {
+                        case 6, 7, 11 -> { // + - )
+                            // E -> E - A
+                            top -= 3;
+                            state = goto0(stack[top]);
+                            production = 9;
+                        }
+                        case 8 -> { // *
+                            state = 33;
+                            production = -1;
+                        }
+                        default -> throw error(token, state);
+                    }
+                }
+                case 37 -> {
+                    switch (token) {
+                        case 6, 7, 8, 11 -> { // + - * )
+                            // A -> A * B
+                            top -= 3;
+                            state = goto3(stack[top]);
+                            production = 11;
+                        }
+                        default -> throw error(token, state);
+                    }
+                }
+                case 38 -> {
+                    switch (token) {
+                        case 6, 7, 8, 11 -> { // + - * )
+                            // B -> ( E )
+                            top -= 3;
+                            state = goto4(stack[top]);
+                            production = 13;
+                        }
+                        default -> throw error(token, state);
+                    }
+                }
+                default -> throw new RuntimeException("Unknown status " + state);
+            }
+
+            if (++top == stack.length) {
+                stack = grow(stack);
+            }
+            stack[top] = state;
+            if (production < 0) {
+                shifted(state);
+                token = nextToken();
+            } else {
+                reduced(state, production);
+            }
+        }
+    }
+
+    // GOTO E
+    private static int goto0(int state) {
+        return switch (state) {
+            case 9 -> 17;
+            case 14 -> 21;
+            case 25 -> 34;
+            default -> 10;
+        };
+    }
+
+    // GOTO S_list
+    private static int goto1(int state) {
+        return switch (state) {
+            case 7 -> 16;
+            default -> 1;
+        };
+    }
+
+    // GOTO A
+    private static int goto3(int state) {
+        return switch (state) {
+            case 14, 25 -> 22;
+            case 18 -> 27;
+            case 19 -> 28;
+            case 31 -> 35;
+            case 32 -> 36;
+            default -> 11;
+        };
+    }
+
+    // GOTO B
+    private static int goto4(int state) {
+        return switch (state) {
+            case 14, 25, 31, 32 -> 23;
+            case 20 -> 29;
+            case 33 -> 37;
+            default -> 12;
+        };
+    }
+}
+
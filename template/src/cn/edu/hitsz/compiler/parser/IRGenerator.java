@@ -1,26 +1,26 @@
 package cn.edu.hitsz.compiler.parser;
 
-import cn.edu.hitsz.compiler.NotImplementedException;
 import cn.edu.hitsz.compiler.ir.IRImmediate;
 import cn.edu.hitsz.compiler.ir.IRValue;
 import cn.edu.hitsz.compiler.ir.IRVariable;
 import cn.edu.hitsz.compiler.ir.Instruction;
 import cn.edu.hitsz.compiler.lexer.Token;
-import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.lexer.TokenBuffer;
 import cn.edu.hitsz.compiler.parser.table.Status;
-import cn.edu.hitsz.compiler.parser.table.Term;
 import cn.edu.hitsz.compiler.symtab.SymbolTable;
 import cn.edu.hitsz.compiler.utils.FileUtils;
-import org.apache.commons.lang3.StringUtils;
 
 import java.util.*;
 
 // TODO: 实验三: 实现 IR 生成
 
 /**
- *
+ * IR 生成
+ * <br>
+ * 按产生式与终结符登记处理函数: 值栈中只保存 id, IntConst 以及由它们求出的表达式的值, 其余符号不在栈中占位,
+ * 因此只有生成指令或需要弹出值的产生式才登记处理函数, 单产生式 (E -> A, A -> B, B -> id, B -> IntConst) 与括号等都不产生调用.
  */
-public class IRGenerator implements ActionObserver {
+public class IRGenerator extends DispatchingActionObserver {
 
     // 存中间代码的List
     private List<Instruction> IRList = new ArrayList<>();
@@ -28,115 +28,93 @@ public class IRGenerator implements ActionObserver {
     // 存放value属性的栈
     private ArrayDeque<IRValue> valueStack = new ArrayDeque<>();
 
-    // 定义空元素
-    private IRVariable emptyElement = IRVariable.named("empty");
+    // 为 true 时临时变量从 0 开始在本对象内编号, 由 ParallelFrontEnd 在拼接时重新编号
+    private final boolean localTemps;
+    private int tempCount = 0;
 
-    @Override
-    public void whenShift(Status currentStatus, Token currentToken) {
-        // 将Token的text属性移入
-        String variableName = currentToken.getText();
-        // 如果是数字，则压入立即数变量
-        if (StringUtils.isNumeric(variableName)) {
-            valueStack.push(IRImmediate.of(Integer.parseInt(variableName)));
-        } else {
-            // 否则压入IR variable 变量
-            valueStack.push(IRVariable.named(variableName));
-        }
+    public IRGenerator() {
+        this(false);
     }
 
-    @Override
-    public void whenReduce(Status currentStatus, Production production) {
-        switch (production.index()) {
-            case 6 -> { // S -> id = E
-                /* 生成赋值语句中间代码 */
-                // 变量值
-                IRValue value = valueStack.pop();
-                // 跳过中间的空元素
-                valueStack.pop();
-                // 待赋值变量
-                IRVariable result = (IRVariable) valueStack.pop();
-                // 生成中间代码并加入IRList
-                IRList.add(Instruction.createMov(result, value));
-            }
-            case 8 -> { // E -> E + A
-                // 生成右操作数
-                IRValue rhs = valueStack.pop();
-                // 跳过空元素
-                valueStack.pop();
-                // 生成左操作数
-                IRValue lhs = valueStack.pop();
-                // 中间代码生成并加入IRList
-                IRVariable temp = IRVariable.temp();
-                IRList.add(Instruction.createAdd(temp, lhs, rhs));
-                // 将中间代码计算的值入栈
-                valueStack.push(temp);
-            }
-            case 9 -> { // E -> E - A
-                // 生成右操作数
-                IRValue rhs = valueStack.pop();
-                // 跳过空元素
-                valueStack.pop();
-                // 生成左操作数
-                IRValue lhs = valueStack.pop();
-
-                // 中间代码生成并加入IRList
-                IRVariable temp = IRVariable.temp();
-                IRList.add(Instruction.createSub(temp, lhs, rhs));
-                // 将中间代码计算的值入栈
-                valueStack.push(temp);
+    /**
+     * @param localTemps 是否在本对象内为临时变量编号, 而不使用全局的编号
+     */
+    IRGenerator(boolean localTemps) {
+        this.localTemps = localTemps;
+
+        // 移入标识符时压入 IR variable 变量
+        onShift("id", new ShiftHandler() {
+            @Override
+            public void handle(Status currentStatus, Token currentToken) {
+                valueStack.push(IRVariable.named(currentToken.getText()));
             }
-            case 11 -> { // A -> A * B
-                // 生成右操作数
-                IRValue rhs = valueStack.pop();
-                // 跳过空元素
-                valueStack.pop();
-                // 生成左操作数
-                IRValue lhs = valueStack.pop();
-                // 中间代码生成并加入IRList
-                IRVariable temp = IRVariable.temp();
-                IRList.add(Instruction.createMul(temp, lhs, rhs));
-                // 将中间代码计算的值入栈
-                valueStack.push(temp);
-            }
-            case 10, 12, 15, 14 -> {
-                // E -> A, A -> B, B-> IntConst
-                // B -> id
-                // 获得操作数 or 需要保留id的名字
-                IRValue value = valueStack.pop();
-                // 将值压回栈中
-                valueStack.push(value);
-            }
-            case 7 -> { // S -> return E
-                // 获得操作数的值
-                IRValue result = valueStack.pop();
-                // 中间代码生成并加入IRList
-                IRList.add(Instruction.createRet(result));
+
+            @Override
+            public void handle(Status currentStatus, TokenBuffer.Cursor cursor) {
+                // 标识符的文本不需要重新构造
+                valueStack.push(IRVariable.named(cursor.getText()));
             }
-            case 13 -> { // B -> ( E )
-                // 弹出右括号对应空元素
-                valueStack.pop();
-                // 记录对应的value值
-                IRValue value = valueStack.pop();
-                // 弹出左括号对应元素
-                valueStack.pop();
-                // 将value压回栈中
-                valueStack.push(value);
+        });
+
+        // 移入常数时压入立即数变量
+        onShift("IntConst", new ShiftHandler() {
+            @Override
+            public void handle(Status currentStatus, Token currentToken) {
+                valueStack.push(IRImmediate.of(Integer.parseInt(currentToken.getText())));
             }
-            default -> {
-                // 弹出产生式body长度的空记录
-                for (Term term : production.body()) {
-                    // 当栈为空时，说明中间代码生成已经完成了，直接break即可
-                    if (valueStack.size() == 0) {
-                        break;
-                    }
-                    valueStack.pop();
-                }
-                // 压入产生式左部的空记录
-                valueStack.push(emptyElement);
+
+            @Override
+            public void handle(Status currentStatus, TokenBuffer.Cursor cursor) {
+                // 常数的值已经在词法分析时解析好了, 超出 int 范围的常数与读取 Token 时一样由 parseInt 报错
+                final var value = cursor.getValue();
+                valueStack.push(IRImmediate.of(value != TokenBuffer.UNPARSED ? value : Integer.parseInt(cursor.getText())));
             }
-        }
+        });
+
+        // S -> D id: 声明语句不生成代码, 只需弹出 id
+        onReduce(4, (status, production) -> valueStack.pop());
+
+        // S -> id = E
+        onReduce(6, (status, production) -> {
+            // 变量值
+            IRValue value = valueStack.pop();
+            // 待赋值变量
+            IRVariable result = (IRVariable) valueStack.pop();
+            // 生成中间代码并加入IRList
+            IRList.add(Instruction.createMov(result, value));
+        });
+
+        // S -> return E
+        onReduce(7, (status, production) -> IRList.add(Instruction.createRet(valueStack.pop())));
+
+        // E -> E + A, E -> E - A, A -> A * B
+        onReduce(8, (status, production) -> binary(Instruction::createAdd));
+        onReduce(9, (status, production) -> binary(Instruction::createSub));
+        onReduce(11, (status, production) -> binary(Instruction::createMul));
     }
 
+    /**
+     * 弹出左右操作数, 生成二元运算的中间代码, 并将结果压入栈中
+     *
+     * @param factory 构造对应指令的函数
+     */
+    private void binary(BinaryInstructionFactory factory) {
+        // 生成右操作数
+        IRValue rhs = valueStack.pop();
+        // 生成左操作数
+        IRValue lhs = valueStack.pop();
+        // 中间代码生成并加入IRList
+        IRVariable temp = localTemps ? IRVariable.temp(tempCount) : IRVariable.temp();
+        tempCount++;
+        IRList.add(factory.create(temp, lhs, rhs));
+        // 将中间代码计算的值入栈
+        valueStack.push(temp);
+    }
+
+    @FunctionalInterface
+    private interface BinaryInstructionFactory {
+        Instruction create(IRVariable result, IRValue lhs, IRValue rhs);
+    }
 
     @Override
     public void whenAccept(Status currentStatus) {
@@ -148,6 +126,13 @@ public class IRGenerator implements ActionObserver {
         // 用不到符号表
     }
 
+    /**
+     * @return 生成的临时变量个数
+     */
+    int getTempCount() {
+        return tempCount;
+    }
+
     public List<Instruction> getIR() {
         // 返回生成好的IRList即可
         return IRList;
@@ -0,0 +1,100 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.parser.table.ListRewrite;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.parser.table.Status;
+
+import java.util.Arrays;
+
+/**
+ * 将改写为左递归的列表的规约还原为原文法的规约序列, 供驱动程序在通知观察者前使用
+ * <br>
+ * 分析时改写后的 L -> alpha 与 L -> L alpha 都不通知观察者, 只为每个列表实例计数; 规约结束该列表的产生式之前, 或接受之前,
+ * 再依次通知一次原来的 L -> alpha 与 (计数 - 1) 次原来的 L -> alpha L. 这与原文法在列表末尾连续规约 L 的顺序相同.
+ * 同一个列表可以嵌套, 所以每个列表的计数是一个栈, 其深度只与嵌套层数有关.
+ *
+ * @see ListRewrite
+ */
+final class ListReductions {
+    private final ListRewrite rewrite;
+    private final DispatchingActionObserver.ReduceHandler notify;
+
+    // 以列表编号为下标的计数栈与栈顶
+    private final int[][] counts;
+    private final int[] tops;
+
+    /**
+     * @param rewrite 分析表使用的改写
+     * @param notify  将还原后的规约通知观察者的函数
+     */
+    ListReductions(ListRewrite rewrite, DispatchingActionObserver.ReduceHandler notify) {
+        this.rewrite = rewrite;
+        this.notify = notify;
+        final var listCount = rewrite.getLists().size();
+        this.counts = new int[listCount][4];
+        this.tops = new int[listCount];
+        Arrays.fill(tops, -1);
+    }
+
+    /**
+     * 处理驱动程序的一次规约
+     *
+     * @param status     规约后的状态
+     * @param production 规约的 (改写后的) 产生式
+     * @return 是否已经处理完毕, 为 false 时调用者应继续将该规约通知观察者
+     */
+    boolean reduce(Status status, Production production) {
+        final var index = production.index();
+        final var list = rewrite.listOf(index);
+        if (list >= 0) {
+            if (rewrite.isBase(index)) {
+                if (++tops[list] == counts[list].length) {
+                    counts[list] = Arrays.copyOf(counts[list], counts[list].length * 2);
+                }
+                counts[list][tops[list]] = 1;
+            } else {
+                counts[list][tops[list]]++;
+            }
+            return true;
+        }
+
+        final var closed = rewrite.closedBy(index);
+        if (closed >= 0) {
+            flush(status, closed);
+        }
+        return false;
+    }
+
+    /**
+     * 接受前还原所有尚未结束的列表 (如开始符号的产生式体以列表结尾)
+     *
+     * @param status 接受时的状态
+     */
+    void accept(Status status) {
+        for (int list = 0; list < tops.length; list++) {
+            while (tops[list] >= 0) {
+                flush(status, list);
+            }
+        }
+    }
+
+    /**
+     * 清空计数, 在重新开始分析前调用
+     */
+    void reset() {
+        Arrays.fill(tops, -1);
+    }
+
+    private void flush(Status status, int list) {
+        if (tops[list] < 0) {
+            throw new RuntimeException("List %s closed before any element was reduced"
+                .formatted(rewrite.getLists().get(list)));
+        }
+        final var count = counts[list][tops[list]--];
+        notify.handle(status, rewrite.getBaseProduction(list));
+        final var step = rewrite.getStepProduction(list);
+        for (int i = 1; i < count; i++) {
+            notify.handle(status, step);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenBuffer;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.DispatchingActionObserver.ReduceHandler;
+import cn.edu.hitsz.compiler.parser.DispatchingActionObserver.ShiftHandler;
+import cn.edu.hitsz.compiler.parser.table.GrammarInfo;
+import cn.edu.hitsz.compiler.parser.table.Status;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 驱动程序使用的观察者分派表
+ * <br>
+ * 对每条产生式 (以行号为下标) 与每种终结符 (以序号为下标) 预先求出需要调用的处理函数数组, 按观察者的注册顺序排列:
+ * {@link DispatchingActionObserver} 只贡献它登记过的处理函数, 普通的观察者则对所有产生式与终结符都贡献其 whenReduce 与 whenShift.
+ * 没有任何处理函数时对应的数组为空数组, 驱动程序的通知循环不执行任何调用.
+ * <br>
+ * 分派表在观察者列表改变后需要重新构造.
+ */
+final class ObserverDispatch {
+    private static final ReduceHandler[] NO_REDUCE_HANDLERS = new ReduceHandler[0];
+    private static final ShiftHandler[] NO_SHIFT_HANDLERS = new ShiftHandler[0];
+
+    private final ReduceHandler[][] reduceHandlers;
+    private final ShiftHandler[][] shiftHandlers;
+
+    // 行号超出分派表范围的产生式 (例如来自其他文法) 使用的处理函数: 对每个观察者调用 whenReduce
+    private final ReduceHandler[] fallbackReduceHandlers;
+
+    ObserverDispatch(List<ActionObserver> observers) {
+        var productionLimit = 0;
+        for (final var production : GrammarInfo.getProductionsInOrder()) {
+            productionLimit = Math.max(productionLimit, production.index() + 1);
+        }
+        for (final var observer : observers) {
+            if (observer instanceof DispatchingActionObserver dispatching) {
+                productionLimit = Math.max(productionLimit, dispatching.reduceHandlerLimit());
+            }
+        }
+
+        reduceHandlers = new ReduceHandler[productionLimit][];
+        for (int index = 0; index < productionLimit; index++) {
+            final var handlers = new ArrayList<ReduceHandler>();
+            for (final var observer : observers) {
+                if (observer instanceof DispatchingActionObserver dispatching) {
+                    final var handler = dispatching.getReduceHandler(index);
+                    if (handler != null) {
+                        handlers.add(handler);
+                    }
+                } else {
+                    handlers.add(observer::whenReduce);
+                }
+            }
+            reduceHandlers[index] = handlers.isEmpty() ? NO_REDUCE_HANDLERS : handlers.toArray(ReduceHandler[]::new);
+        }
+        fallbackReduceHandlers = observers.stream()
+            .map(observer -> (ReduceHandler) observer::whenReduce)
+            .toArray(ReduceHandler[]::new);
+
+        shiftHandlers = new ShiftHandler[TokenKind.ordinalCount()][];
+        for (int ordinal = 0; ordinal < shiftHandlers.length; ordinal++) {
+            final var handlers = new ArrayList<ShiftHandler>();
+            for (final var observer : observers) {
+                if (observer instanceof DispatchingActionObserver dispatching) {
+                    final var handler = dispatching.getShiftHandler(ordinal);
+                    if (handler != null) {
+                        handlers.add(handler);
+                    }
+                } else {
+                    handlers.add(forwardShift(observer));
+                }
+            }
+            shiftHandlers[ordinal] = handlers.isEmpty() ? NO_SHIFT_HANDLERS : handlers.toArray(ShiftHandler[]::new);
+        }
+    }
+
+    /**
+     * @param productionIndex 产生式行号
+     * @return 规约该产生式时需要调用的处理函数
+     */
+    ReduceHandler[] reduceHandlers(int productionIndex) {
+        return productionIndex < reduceHandlers.length ? reduceHandlers[productionIndex] : fallbackReduceHandlers;
+    }
+
+    /**
+     * @param ordinal 终结符序号
+     * @return 移入该终结符时需要调用的处理函数
+     */
+    ShiftHandler[] shiftHandlers(int ordinal) {
+        return shiftHandlers[ordinal];
+    }
+
+    private static ShiftHandler forwardShift(ActionObserver observer) {
+        return new ShiftHandler() {
+            @Override
+            public void handle(Status currentStatus, Token currentToken) {
+                observer.whenShift(currentStatus, currentToken);
+            }
+
+            @Override
+            public void handle(Status currentStatus, TokenBuffer.Cursor cursor) {
+                observer.whenShift(currentStatus, cursor);
+            }
+        };
+    }
+}
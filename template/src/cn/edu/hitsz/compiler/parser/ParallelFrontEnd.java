@@ -0,0 +1,348 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.ir.IRValue;
+import cn.edu.hitsz.compiler.ir.IRVariable;
+import cn.edu.hitsz.compiler.ir.Instruction;
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenBuffer;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.table.CompiledLRTable;
+import cn.edu.hitsz.compiler.parser.table.GrammarInfo;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.parser.table.Status;
+import cn.edu.hitsz.compiler.symtab.SourceCodeType;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+import cn.edu.hitsz.compiler.utils.FileUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * 按语句分段并行的语法分析, 语义分析与 IR 生成
+ * <br>
+ * 由 S_list -> S Semicolon S_list 可知, 每移入一个语句末尾的 Semicolon 后, 自动机都回到同一个状态, 且之后的规约不会弹出它之下的状态
+ * (S_list 的规约都发生在读到 EOF 之后). 因此可以在 Semicolon 之后把词法单元序列切成若干段, 每段由自己的 {@link SyntaxAnalyzer}
+ * 从该状态开始分析, 并有自己的 {@link SemanticAnalyzer} 与 {@link IRGenerator}, 各段在 {@link ForkJoinPool#commonPool()} 上同时进行:
+ * <ul>
+ *     <li>起始状态: 先不带观察者地分析第一个语句, 取移入其 Semicolon 之后的栈顶状态; 第一段从初始状态开始, 其余各段从该状态开始</li>
+ *     <li>验证: 除最后一段外, 每段结束时的栈顶状态都必须等于下一段的起始状态, 且分析中没有弹出起始状态;
+ *     否则 (包括出现语法错误, 即 {@link SyntaxErrorException} 时) 放弃分段的结果, 按顺序重新分析, 以得到与顺序分析相同的结果或错误;
+ *     观察者抛出的其他异常不会触发重新分析, 直接传给调用者</li>
+ *     <li>收尾: 将各段剩余的状态栈依次拼接成完整的状态栈, 从它开始分析最后的 EOF, 完成 S_list 与 P 的规约并接受</li>
+ *     <li>拼接: 规约序列按段的顺序连接; 各段的 IRGenerator 从 0 开始为临时变量编号, 拼接时加上之前各段的临时变量总数,
+ *     并在全局编号中预留同样多的编号, 因此输出与顺序分析时完全相同</li>
+ *     <li>符号表: 各段的 SemanticAnalyzer 使用只记录声明类型的符号表, 拼接时按段的顺序对真正的符号表执行同样的更新</li>
+ * </ul>
+ * 这要求各观察者在语句边界上的栈为空, 即只为自己关心的符号保存属性 (见 {@link DispatchingActionObserver}).
+ */
+public class ParallelFrontEnd {
+    private final SymbolTable symbolTable;
+    private final CompiledLRTable table;
+    private int chunkCount = ForkJoinPool.getCommonPoolParallelism() * 4;
+
+    private final List<Production> reductions = new ArrayList<>();
+    private final List<Instruction> instructions = new ArrayList<>();
+    private boolean split = false;
+
+    /**
+     * @param symbolTable 词法分析得到的符号表
+     * @param table       编译后的分析表
+     */
+    public ParallelFrontEnd(SymbolTable symbolTable, CompiledLRTable table) {
+        this.symbolTable = symbolTable;
+        this.table = table;
+    }
+
+    /**
+     * @param chunkCount 最多将词法单元序列分成几段
+     */
+    public void setChunkCount(int chunkCount) {
+        if (chunkCount <= 0) {
+            throw new RuntimeException("Illegal chunk count " + chunkCount);
+        }
+        this.chunkCount = chunkCount;
+    }
+
+    /**
+     * 分析词法单元序列, 生成规约序列与中间代码, 并更新符号表
+     *
+     * @param tokens 词法单元序列, 最后一个词法单元应为 EOF
+     */
+    public void run(TokenBuffer tokens) {
+        reductions.clear();
+        instructions.clear();
+
+        final var results = runChunks(tokens);
+        split = results != null;
+        if (!split) {
+            runSequentially(tokens);
+            return;
+        }
+
+        // 按段的顺序拼接, 临时变量统一重新编号
+        final var tempBase = IRVariable.reserveTemps(Arrays.stream(results).mapToInt(Chunk::temps).sum());
+        var tempOffset = tempBase;
+        for (final var result : results) {
+            reductions.addAll(result.reductions());
+            for (final var type : result.declarations()) {
+                symbolTable.setSelectedSymbolType(symbolTable.getFirstNullTypeSymbolName(), type);
+            }
+            for (final var instruction : result.instructions()) {
+                instructions.add(renumber(instruction, tempOffset));
+            }
+            tempOffset += result.temps();
+        }
+    }
+
+    /**
+     * @return 上一次 run 是否分段并行地完成了分析, 为 false 时是按顺序分析的
+     */
+    public boolean isSplit() {
+        return split;
+    }
+
+    /**
+     * @return 规约出的产生式, 与 {@link ProductionCollector} 收集的相同 (最后为起始产生式)
+     */
+    public List<Production> getReductions() {
+        return reductions;
+    }
+
+    /**
+     * 将规约出的产生式输出到文件, 格式与 {@link ProductionCollector#dumpToFile} 相同
+     *
+     * @param path 文件路径
+     */
+    public void dumpReductions(String path) {
+        FileUtils.writeLines(path, reductions.stream().map(Production::toString).toList());
+    }
+
+    public List<Instruction> getIR() {
+        return instructions;
+    }
+
+    public void dumpIR(String path) {
+        FileUtils.writeLines(path, instructions.stream().map(Instruction::toString).toList());
+    }
+
+    /**
+     * 一段的分析结果
+     *
+     * @param stack        分析结束时起始状态之上的状态栈
+     * @param reductions   规约出的产生式
+     * @param declarations 按顺序声明的类型
+     * @param instructions 中间代码, 临时变量从 0 开始编号
+     * @param temps        临时变量个数
+     */
+    private record Chunk(int[] stack, List<Production> reductions, List<SourceCodeType> declarations,
+                         List<Instruction> instructions, int temps) {
+    }
+
+    /**
+     * @return 各段及收尾的分析结果; 不能分段或分段的结果不可用时为 null
+     */
+    private Chunk[] runChunks(TokenBuffer tokens) {
+        // 改写为左递归的 S_list 在每个语句后都会规约, 会弹出段的起始状态, 不能这样分段
+        if (table.getListRewrite() != null) {
+            return null;
+        }
+
+        final var semicolon = TokenKind.fromString("Semicolon").getOrdinal();
+        final var eof = tokens.size() - 1;
+        if (eof < 0 || tokens.getKindOrdinal(eof) != TokenKind.eof().getOrdinal()) {
+            return null;
+        }
+
+        // 在 Semicolon 之后切分, 各段的词法单元数大致相同
+        final var bounds = new ArrayList<Integer>();
+        bounds.add(0);
+        final var target = Math.max(1, eof / chunkCount);
+        var firstStatementEnd = -1;
+        for (int index = 0; index < eof; index++) {
+            if (tokens.getKindOrdinal(index) == semicolon) {
+                if (firstStatementEnd < 0) {
+                    firstStatementEnd = index + 1;
+                }
+                if (index + 1 - bounds.get(bounds.size() - 1) >= target && index + 1 < eof) {
+                    bounds.add(index + 1);
+                }
+            }
+        }
+        bounds.add(eof);
+        if (firstStatementEnd < 0 || bounds.size() < 3) {
+            return null;
+        }
+
+        // 各段共用同一张表, 先在当前线程构造好状态与产生式对象
+        table.resolveObjects();
+
+        // 分析第一个语句, 得到各段的起始状态
+        final int resume;
+        try {
+            final var probe = new SyntaxAnalyzer(new SymbolTable());
+            probe.loadTokens(tokens.cursor(0, firstStatementEnd));
+            probe.loadLRTable(table);
+            final var stack = probe.runFrom(new int[]{table.initState()}, true);
+            resume = stack[stack.length - 1];
+        } catch (SyntaxErrorException e) {
+            return null;
+        }
+
+        final var count = bounds.size() - 1;
+        final var chunks = new Chunk[count];
+        final var failed = new boolean[1];
+        ForkJoinPool.commonPool().submit(() -> IntStream.range(0, count).parallel().forEach(i -> {
+            try {
+                chunks[i] = parseChunk(tokens.cursor(bounds.get(i), bounds.get(i + 1)),
+                    new int[]{i == 0 ? table.initState() : resume}, true);
+            } catch (SyntaxErrorException e) {
+                failed[0] = true;
+            }
+        })).join();
+        if (failed[0]) {
+            return null;
+        }
+        for (int i = 0; i + 1 < count; i++) {
+            final var stack = chunks[i].stack();
+            if (stack.length == 0 || stack[stack.length - 1] != resume) {
+                return null;
+            }
+        }
+
+        // 拼接各段的状态栈, 从它开始分析 EOF
+        var length = 1;
+        for (final var chunk : chunks) {
+            length += chunk.stack().length;
+        }
+        final var stack = new int[length];
+        stack[0] = table.initState();
+        var top = 1;
+        for (final var chunk : chunks) {
+            System.arraycopy(chunk.stack(), 0, stack, top, chunk.stack().length);
+            top += chunk.stack().length;
+        }
+        final Chunk tail;
+        try {
+            tail = parseChunk(tokens.cursor(eof, eof + 1), stack, false);
+        } catch (SyntaxErrorException e) {
+            return null;
+        }
+
+        final var results = Arrays.copyOf(chunks, count + 1);
+        results[count] = tail;
+        return results;
+    }
+
+    /**
+     * 用一组新的观察者分析一段词法单元
+     *
+     * @param tokens       该段的游标
+     * @param initialStack 初始状态栈
+     * @param partial      是否在词法单元读完时停止
+     * @return 分析结果
+     */
+    private Chunk parseChunk(TokenBuffer.Cursor tokens, int[] initialStack, boolean partial) {
+        final var declarations = new PendingSymbolTable();
+        final var collector = new ReductionCollector();
+        final var irGenerator = new IRGenerator(true);
+
+        final var parser = new SyntaxAnalyzer(declarations);
+        parser.registerObserver(collector);
+        parser.registerObserver(new SemanticAnalyzer());
+        parser.registerObserver(irGenerator);
+        parser.loadTokens(tokens);
+        parser.loadLRTable(table);
+        final var stack = parser.runFrom(initialStack, partial);
+
+        final var rest = stack == null ? new int[0] : Arrays.copyOfRange(stack, initialStack.length, stack.length);
+        return new Chunk(rest, collector.reductions, declarations.types, irGenerator.getIR(), irGenerator.getTempCount());
+    }
+
+    private void runSequentially(TokenBuffer tokens) {
+        final var collector = new ReductionCollector();
+        final var irGenerator = new IRGenerator();
+
+        final var parser = new SyntaxAnalyzer(symbolTable);
+        parser.registerObserver(collector);
+        parser.registerObserver(new SemanticAnalyzer());
+        parser.registerObserver(irGenerator);
+        parser.loadTokens(tokens);
+        parser.loadLRTable(table);
+        parser.run();
+
+        reductions.addAll(collector.reductions);
+        instructions.addAll(irGenerator.getIR());
+    }
+
+    private static Instruction renumber(Instruction instruction, int offset) {
+        final var operands = instruction.getOperands();
+        return switch (instruction.getKind()) {
+            case ADD -> Instruction.createAdd(renumber(instruction.getResult(), offset),
+                renumber(operands.get(0), offset), renumber(operands.get(1), offset));
+            case SUB -> Instruction.createSub(renumber(instruction.getResult(), offset),
+                renumber(operands.get(0), offset), renumber(operands.get(1), offset));
+            case MUL -> Instruction.createMul(renumber(instruction.getResult(), offset),
+                renumber(operands.get(0), offset), renumber(operands.get(1), offset));
+            case MOV -> Instruction.createMov(renumber(instruction.getResult(), offset), renumber(operands.get(0), offset));
+            case RET -> Instruction.createRet(renumber(operands.get(0), offset));
+        };
+    }
+
+    private static <T extends IRValue> T renumber(T value, int offset) {
+        if (value instanceof IRVariable variable && variable.isTemp()) {
+            @SuppressWarnings("unchecked") final var result = (T) IRVariable.temp(variable.getTempNumber() + offset);
+            return result;
+        }
+        return value;
+    }
+
+    /**
+     * 收集规约出的产生式, 接受时加入起始产生式, 与 ProductionCollector 相同
+     */
+    private static class ReductionCollector implements ActionObserver {
+        private final List<Production> reductions = new ArrayList<>();
+
+        @Override
+        public void whenShift(Status currentStatus, Token currentToken) {
+        }
+
+        @Override
+        public void whenShift(Status currentStatus, TokenBuffer.Cursor cursor) {
+        }
+
+        @Override
+        public void whenReduce(Status currentStatus, Production production) {
+            reductions.add(production);
+        }
+
+        @Override
+        public void whenAccept(Status currentStatus) {
+            reductions.add(GrammarInfo.getBeginProduction());
+        }
+
+        @Override
+        public void setSymbolTable(SymbolTable table) {
+        }
+    }
+
+    /**
+     * 各段的 SemanticAnalyzer 使用的符号表: 只按顺序记录声明的类型, 拼接时再对真正的符号表执行
+     */
+    private static class PendingSymbolTable extends SymbolTable {
+        private final List<SourceCodeType> types = new ArrayList<>();
+
+        @Override
+        public String getFirstNullTypeSymbolName() {
+            // 真正的符号名要等到拼接时才能确定
+            return null;
+        }
+
+        @Override
+        public void setSelectedSymbolType(String text, SourceCodeType type) {
+            types.add(type);
+        }
+    }
+}
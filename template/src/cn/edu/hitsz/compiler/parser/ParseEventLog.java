@@ -0,0 +1,192 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.table.GrammarInfo;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * 由 {@link ParseEventRecorder} 记录的一次语法分析的动作序列, 可由 {@link ParseEventReplayer} 重放给任意观察者
+ * <br>
+ * 事件流是一串无符号 varint (每字节 7 位, 最高位表示后面还有字节), 每个事件两个数:
+ * <ul>
+ *     <li>(值 &lt;&lt; 2) | 类型: 类型为 0 (移入) 时值是词法单元表的下标, 为 1 (规约) 时是产生式行号, 为 2 (接受) 时为 0</li>
+ *     <li>动作后的状态编号</li>
+ * </ul>
+ * 类型与文本都相同的词法单元在词法单元表中只出现一次, 标点与关键字也只各占一项, 所以绝大多数事件只占 2 到 3 个字节.
+ * <br>
+ * 文件格式 (定长部分为大端序):
+ * <pre>
+ * int  魔数 "PEVL"
+ * int  格式版本
+ * int  产生式个数, 之后每项为 int 行号与 UTF 文本
+ * int  词法单元个数, 之后每项为 UTF 类型标识符与 UTF 文本
+ * long 事件数
+ * int  事件流字节数, 之后为事件流
+ * </pre>
+ * 加载时以产生式文本与类型标识符核对语法文件与码点文件, 它们在记录之后被修改过时拒绝加载.
+ */
+public final class ParseEventLog {
+    static final int SHIFT = 0;
+    static final int REDUCE = 1;
+    static final int ACCEPT = 2;
+
+    private static final int MAGIC = 0x5045564C;
+    private static final int VERSION = 1;
+
+    // 以行号为下标的产生式, 没有被规约过的为 null
+    private final Production[] productions;
+    private final Token[] tokens;
+    private final long eventCount;
+    private final byte[] events;
+    private final int length;
+
+    ParseEventLog(Production[] productions, Token[] tokens, long eventCount, byte[] events, int length) {
+        this.productions = productions;
+        this.tokens = tokens;
+        this.eventCount = eventCount;
+        this.events = events;
+        this.length = length;
+    }
+
+    /**
+     * @return 事件数
+     */
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * @return 事件流的字节数
+     */
+    public int getEventBytes() {
+        return length;
+    }
+
+    /**
+     * 将记录中出现的标识符按第一次出现的顺序加入符号表, 与词法分析得到的符号表相同, 供重放时的语义分析使用
+     *
+     * @param table 符号表
+     */
+    public void fillSymbolTable(SymbolTable table) {
+        final var identifier = TokenKind.fromString("id");
+        for (final var token : tokens) {
+            if (token.getKind().equals(identifier) && !table.has(token.getText())) {
+                table.add(token.getText());
+            }
+        }
+    }
+
+    /**
+     * 将记录写入文件
+     *
+     * @param path 文件路径
+     */
+    public void write(String path) {
+        try (final var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(Paths.get(path))))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+
+            out.writeInt((int) Arrays.stream(productions).filter(production -> production != null).count());
+            for (final var production : productions) {
+                if (production != null) {
+                    out.writeInt(production.index());
+                    out.writeUTF(production.toString());
+                }
+            }
+
+            out.writeInt(tokens.length);
+            for (final var token : tokens) {
+                out.writeUTF(token.getKindId());
+                out.writeUTF(token.getText());
+            }
+
+            out.writeLong(eventCount);
+            out.writeInt(length);
+            out.write(events, 0, length);
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception on " + path, e);
+        }
+    }
+
+    /**
+     * 从文件中读取记录
+     *
+     * @param path 文件路径
+     * @return 读取的记录
+     * @throws RuntimeException 文件格式或版本不符, 或语法文件与码点文件在记录之后被修改过
+     */
+    public static ParseEventLog load(String path) {
+        try (final var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(Paths.get(path))))) {
+            if (in.readInt() != MAGIC) {
+                throw new RuntimeException("Not a parse event log: " + path);
+            }
+            final var version = in.readInt();
+            if (version != VERSION) {
+                throw new RuntimeException("Unsupported parse event log version %d in %s".formatted(version, path));
+            }
+
+            final var byIndex = new Production[GrammarInfo.getProductionsInOrder().stream()
+                .mapToInt(Production::index).max().orElse(-1) + 1];
+            for (final var production : GrammarInfo.getProductionsInOrder()) {
+                byIndex[production.index()] = production;
+            }
+            var productions = new Production[0];
+            final var productionCount = in.readInt();
+            for (int i = 0; i < productionCount; i++) {
+                final var index = in.readInt();
+                final var text = in.readUTF();
+                if (index >= byIndex.length || byIndex[index] == null || !byIndex[index].toString().equals(text)) {
+                    throw new RuntimeException("Grammar changed since " + path + " was recorded: " + text);
+                }
+                if (index >= productions.length) {
+                    productions = Arrays.copyOf(productions, index + 1);
+                }
+                productions[index] = byIndex[index];
+            }
+
+            final var tokens = new Token[in.readInt()];
+            for (int i = 0; i < tokens.length; i++) {
+                final var kind = in.readUTF();
+                if (!TokenKind.isAllowed(kind) && !kind.equals(TokenKind.eof().getIdentifier())) {
+                    throw new RuntimeException("Coding map changed since " + path + " was recorded: " + kind);
+                }
+                final var tokenKind = kind.equals(TokenKind.eof().getIdentifier()) ? TokenKind.eof() : TokenKind.fromString(kind);
+                tokens[i] = Token.normal(tokenKind, in.readUTF());
+            }
+
+            final var eventCount = in.readLong();
+            final var events = new byte[in.readInt()];
+            in.readFully(events);
+            return new ParseEventLog(productions, tokens, eventCount, events, events.length);
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception on " + path, e);
+        }
+    }
+
+    Production[] productions() {
+        return productions;
+    }
+
+    Token[] tokens() {
+        return tokens;
+    }
+
+    byte[] events() {
+        return events;
+    }
+
+    int length() {
+        return length;
+    }
+}
@@ -0,0 +1,238 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenBuffer;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.parser.table.Status;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 将驱动程序的动作事件交给各观察者在各自线程中处理的环形缓冲区
+ * <br>
+ * 只有驱动程序一个生产者: 每个事件占环中的一个槽, 由动作类型, 状态与附带的对象 (规约的产生式, 或迭代器方式下移入的 Token) 组成,
+ * 都是已有对象的引用, 发布事件不分配对象. 每个观察者对应一个消费者线程, 按发布顺序处理全部事件, 因此每个观察者看到的调用序列与在分析线程中直接调用时相同.
+ * <ul>
+ *     <li>批量: 生产者每写满一批 (或缓冲区满, 或结束时) 才发布一次序号; 消费者一次处理所有已发布的事件后才更新一次自己的序号</li>
+ *     <li>背压: 生产者写入前检查最慢的消费者, 缓冲区满时等待其处理, 而不是丢弃事件或扩容</li>
+ *     <li>等待先自旋, 再让出, 最后短暂休眠, 单核机器上也不会长时间空转</li>
+ * </ul>
+ * 从 {@link TokenBuffer} 读取词法单元时移入事件不附带对象, 每个消费者持有自己的游标, 每处理一个移入事件前移一次.
+ * <br>
+ * 观察者之间只共享符号表, 它只会被 SemanticAnalyzer 修改; 所有消费者线程结束后, 分析线程才能读取观察者的结果.
+ */
+final class ParseEventPipeline {
+    private static final byte SHIFT = 0;
+    private static final byte REDUCE = 1;
+    private static final byte ACCEPT = 2;
+
+    private final int mask;
+    private final int batchSize;
+    private final byte[] kinds;
+    private final Status[] statuses;
+    private final Object[] payloads;
+
+    // 已发布的事件数, 消费者只能读取序号小于它的槽
+    private final AtomicLong published = new AtomicLong();
+    private volatile boolean closed = false;
+
+    private final Consumer[] consumers;
+
+    // 生产者自己使用: 下一个要写入的序号, 以及上次看到的最慢消费者的序号
+    private long next = 0;
+    private long slowest = 0;
+
+    /**
+     * @param observers 观察者, 每个观察者一个消费者线程
+     * @param tokens    驱动程序从中读取词法单元的 TokenBuffer, 以迭代器方式读取时为 null
+     * @param capacity  环的大小, 必须是 2 的幂
+     * @param batchSize 每批发布的事件数
+     */
+    ParseEventPipeline(List<ActionObserver> observers, TokenBuffer tokens, int capacity, int batchSize) {
+        if (Integer.bitCount(capacity) != 1 || batchSize <= 0 || batchSize > capacity) {
+            throw new RuntimeException("Illegal capacity or batch size of the event pipeline");
+        }
+        this.mask = capacity - 1;
+        this.batchSize = batchSize;
+        this.kinds = new byte[capacity];
+        this.statuses = new Status[capacity];
+        this.payloads = new Object[capacity];
+        this.consumers = observers.stream()
+            .map(observer -> new Consumer(observer, tokens == null ? null : tokens.cursor()))
+            .toArray(Consumer[]::new);
+    }
+
+    void start() {
+        for (final var consumer : consumers) {
+            consumer.thread.start();
+        }
+    }
+
+    void shift(Status status, Token token) {
+        publish(SHIFT, status, token);
+    }
+
+    /**
+     * 从 TokenBuffer 读取时的移入事件, 消费者从自己的游标读取该词法单元
+     */
+    void shift(Status status) {
+        publish(SHIFT, status, null);
+    }
+
+    void reduce(Status status, Production production) {
+        publish(REDUCE, status, production);
+    }
+
+    void accept(Status status) {
+        publish(ACCEPT, status, null);
+    }
+
+    /**
+     * 发布剩余的事件, 等待所有消费者处理完毕
+     *
+     * @throws RuntimeException 某个观察者在处理事件时抛出了异常
+     */
+    void finish() {
+        published.set(next);
+        closed = true;
+        join();
+        for (final var consumer : consumers) {
+            if (consumer.error != null) {
+                throw new RuntimeException("Observer failed: " + consumer.observer.getClass().getSimpleName(), consumer.error);
+            }
+        }
+    }
+
+    /**
+     * 分析出错时调用: 已发布的事件仍会被处理完, 之后各消费者线程结束, 观察者的异常附加到分析的异常上
+     *
+     * @param cause 分析时抛出的异常
+     */
+    void abort(Throwable cause) {
+        closed = true;
+        join();
+        for (final var consumer : consumers) {
+            if (consumer.error != null) {
+                cause.addSuppressed(consumer.error);
+            }
+        }
+    }
+
+    private void publish(byte kind, Status status, Object payload) {
+        if (next - slowest >= kinds.length) {
+            // 缓冲区满: 先发布已写入的事件, 再等待最慢的消费者
+            published.set(next);
+            var idle = 0;
+            while (next - (slowest = slowestSequence()) >= kinds.length) {
+                idle = idle(idle);
+            }
+        }
+
+        final var slot = (int) (next & mask);
+        kinds[slot] = kind;
+        statuses[slot] = status;
+        payloads[slot] = payload;
+        if (++next % batchSize == 0) {
+            published.lazySet(next);
+        }
+    }
+
+    private long slowestSequence() {
+        var result = Long.MAX_VALUE;
+        for (final var consumer : consumers) {
+            result = Math.min(result, consumer.sequence.get());
+        }
+        return result;
+    }
+
+    private void join() {
+        for (final var consumer : consumers) {
+            try {
+                consumer.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for observers", e);
+            }
+        }
+    }
+
+    /**
+     * 等待一轮: 先自旋, 再让出, 最后休眠
+     *
+     * @param idle 已经等待的轮数
+     * @return 新的轮数
+     */
+    private static int idle(int idle) {
+        if (idle < 64) {
+            Thread.onSpinWait();
+        } else if (idle < 128) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(50_000);
+        }
+        return idle + 1;
+    }
+
+    private final class Consumer implements Runnable {
+        private final ActionObserver observer;
+        private final TokenBuffer.Cursor cursor;
+        private final Thread thread;
+
+        // 已处理的事件数; 出错后置为最大值, 不再阻塞生产者
+        private final AtomicLong sequence = new AtomicLong();
+        private volatile Throwable error;
+
+        private Consumer(ActionObserver observer, TokenBuffer.Cursor cursor) {
+            this.observer = observer;
+            this.cursor = cursor;
+            this.thread = new Thread(this, "parse-observer-" + observer.getClass().getSimpleName());
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                var consumed = 0L;
+                var idle = 0;
+                while (true) {
+                    // 先读 closed 再读 published: 生产者关闭前已发布全部事件
+                    final var done = closed;
+                    final var available = published.get();
+                    if (available > consumed) {
+                        for (; consumed < available; consumed++) {
+                            dispatch((int) (consumed & mask));
+                        }
+                        sequence.lazySet(consumed);
+                        idle = 0;
+                    } else if (done) {
+                        return;
+                    } else {
+                        idle = idle(idle);
+                    }
+                }
+            } catch (Throwable e) {
+                error = e;
+                sequence.set(Long.MAX_VALUE);
+            }
+        }
+
+        private void dispatch(int slot) {
+            final var status = statuses[slot];
+            switch (kinds[slot]) {
+                case SHIFT -> {
+                    if (payloads[slot] instanceof Token token) {
+                        observer.whenShift(status, token);
+                    } else {
+                        cursor.advance();
+                        observer.whenShift(status, cursor);
+                    }
+                }
+                case REDUCE -> observer.whenReduce(status, (Production) payloads[slot]);
+                case ACCEPT -> observer.whenAccept(status);
+                default -> throw new RuntimeException("Unknown parse event " + kinds[slot]);
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenBuffer;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.parser.table.Status;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 将驱动程序的动作序列记录为 {@link ParseEventLog} 的观察者
+ * <br>
+ * 与其他观察者一起注册到驱动程序 (SyntaxAnalyzer 或生成的直接编码分析程序) 上即可, 分析结束后以 {@link #getLog()} 取得记录.
+ * 之后可以用 {@link ParseEventReplayer} 把同样的动作序列重放给语义分析或 IR 生成, 不再需要词法分析与分析表.
+ *
+ * @see ParseEventLog 记录的格式
+ */
+public class ParseEventRecorder implements ActionObserver {
+    private byte[] events = new byte[1024];
+    private int length = 0;
+    private long eventCount = 0;
+
+    // 以行号为下标的已规约产生式
+    private Production[] productions = new Production[0];
+
+    // 词法单元表, 以及以终结符序号为下标的 "文本 -> 词法单元表下标" 索引
+    private final List<Token> tokens = new ArrayList<>();
+    private final List<Map<String, Integer>> tokenIndex = new ArrayList<>();
+
+    /**
+     * @return 到目前为止记录的动作序列
+     */
+    public ParseEventLog getLog() {
+        return new ParseEventLog(productions.clone(), tokens.toArray(Token[]::new), eventCount,
+            Arrays.copyOf(events, length), length);
+    }
+
+    @Override
+    public void whenShift(Status currentStatus, Token currentToken) {
+        final var reference = tokenReference(currentToken.getKind(), currentToken.getText());
+        record(ParseEventLog.SHIFT, reference, currentStatus);
+    }
+
+    @Override
+    public void whenShift(Status currentStatus, TokenBuffer.Cursor cursor) {
+        final var reference = tokenReference(cursor.getKind(), cursor.getText());
+        record(ParseEventLog.SHIFT, reference, currentStatus);
+    }
+
+    @Override
+    public void whenReduce(Status currentStatus, Production production) {
+        final var index = production.index();
+        if (index >= productions.length) {
+            productions = Arrays.copyOf(productions, index + 1);
+        }
+        productions[index] = production;
+        record(ParseEventLog.REDUCE, index, currentStatus);
+    }
+
+    @Override
+    public void whenAccept(Status currentStatus) {
+        record(ParseEventLog.ACCEPT, 0, currentStatus);
+    }
+
+    @Override
+    public void setSymbolTable(SymbolTable table) {
+        // 符号表的内容可以由记录中的标识符重新得到, 不需要保存
+    }
+
+    private int tokenReference(TokenKind kind, String text) {
+        final var ordinal = kind.getOrdinal();
+        while (tokenIndex.size() <= ordinal) {
+            tokenIndex.add(new HashMap<>());
+        }
+        final var byText = tokenIndex.get(ordinal);
+        final var reference = byText.get(text);
+        if (reference != null) {
+            return reference;
+        }
+
+        byText.put(text, tokens.size());
+        tokens.add(Token.normal(kind, text));
+        return tokens.size() - 1;
+    }
+
+    private void record(int type, int value, Status status) {
+        writeVarInt(((long) value << 2) | type);
+        writeVarInt(status.index());
+        eventCount++;
+    }
+
+    private void writeVarInt(long value) {
+        if (length + 10 > events.length) {
+            events = Arrays.copyOf(events, events.length * 2);
+        }
+        while ((value & ~0x7FL) != 0) {
+            events[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        events[length++] = (byte) value;
+    }
+}
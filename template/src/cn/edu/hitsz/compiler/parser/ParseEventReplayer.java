@@ -0,0 +1,106 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.parser.table.Status;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 将 {@link ParseEventLog} 中的动作序列重放给观察者, 代替词法分析与 LR 驱动程序
+ * <br>
+ * 用法与 {@link SyntaxAnalyzer} 相同: 注册观察者, 加载记录, 再执行 run. 观察者收到的调用序列与记录时相同,
+ * 移入时传入的是 Token (同样的词法单元共享同一个对象), 状态只有编号, 不含 ACTION 与 GOTO.
+ * 与驱动程序一样按 {@link DispatchingActionObserver} 登记的处理函数分派, 观察者不关心的事件不产生调用.
+ * <br>
+ * 需要符号表的观察者 (如 SemanticAnalyzer) 应使用 {@link ParseEventLog#fillSymbolTable} 填充过的符号表.
+ */
+public class ParseEventReplayer {
+    private final SymbolTable symbolTable;
+    private final List<ActionObserver> observers = new ArrayList<>();
+    private ParseEventLog log;
+
+    public ParseEventReplayer(SymbolTable symbolTable) {
+        this.symbolTable = symbolTable;
+    }
+
+    /**
+     * 注册新的观察者
+     *
+     * @param observer 观察者
+     */
+    public void registerObserver(ActionObserver observer) {
+        observers.add(observer);
+        observer.setSymbolTable(symbolTable);
+    }
+
+    /**
+     * @param log 要重放的记录
+     */
+    public void loadLog(ParseEventLog log) {
+        this.log = log;
+    }
+
+    public void run() {
+        final var dispatch = new ObserverDispatch(observers);
+        final var productions = log.productions();
+        final var tokens = log.tokens();
+        final var events = log.events();
+        final var length = log.length();
+        var statuses = new Status[64];
+
+        var position = 0;
+        while (position < length) {
+            // 读入两个 varint: 带类型的值与状态编号
+            long tagged = 0;
+            for (int shift = 0; ; shift += 7) {
+                final var b = events[position++];
+                tagged |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    break;
+                }
+            }
+            var state = 0;
+            for (int shift = 0; ; shift += 7) {
+                final var b = events[position++];
+                state |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    break;
+                }
+            }
+
+            if (state >= statuses.length) {
+                statuses = Arrays.copyOf(statuses, Math.max(statuses.length * 2, state + 1));
+            }
+            if (statuses[state] == null) {
+                statuses[state] = Status.create(state);
+            }
+            final var status = statuses[state];
+
+            final var value = (int) (tagged >>> 2);
+            switch ((int) (tagged & 3)) {
+                case ParseEventLog.SHIFT -> {
+                    final var token = tokens[value];
+                    for (final var handler : dispatch.shiftHandlers(token.getKind().getOrdinal())) {
+                        handler.handle(status, token);
+                    }
+                }
+                case ParseEventLog.REDUCE -> {
+                    final var production = productions[value];
+                    for (final var handler : dispatch.reduceHandlers(value)) {
+                        handler.handle(status, production);
+                    }
+                }
+                case ParseEventLog.ACCEPT -> {
+                    for (final var observer : observers) {
+                        observer.whenAccept(status);
+                    }
+                    return;
+                }
+                default -> throw new RuntimeException("Corrupted parse event log at byte " + position);
+            }
+        }
+        throw new RuntimeException("Parse event log ended before accept");
+    }
+}
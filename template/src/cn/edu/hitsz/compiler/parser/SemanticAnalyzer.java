@@ -1,73 +1,54 @@
 package cn.edu.hitsz.compiler.parser;
 
 import cn.edu.hitsz.compiler.lexer.Token;
-import cn.edu.hitsz.compiler.lexer.TokenKind;
-import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.lexer.TokenBuffer;
 import cn.edu.hitsz.compiler.parser.table.Status;
-import cn.edu.hitsz.compiler.parser.table.Term;
 import cn.edu.hitsz.compiler.symtab.SourceCodeType;
 import cn.edu.hitsz.compiler.symtab.SymbolTable;
 
 import java.util.ArrayDeque;
 
 // TODO: 实验三: 实现语义分析
-public class SemanticAnalyzer implements ActionObserver {
 
-    // 存放符号type属性
-    private ArrayDeque<String> typeStack = new ArrayDeque<>();
+/**
+ * 语义分析
+ * <br>
+ * 只登记了类型关键字的移入与声明语句的规约: 移入 int 时将类型压栈, 规约 S -> D id 时弹出类型并更新符号表, 其余符号与产生式都不产生调用.
+ */
+public class SemanticAnalyzer extends DispatchingActionObserver {
+
+    // 存放符号type属性, 只保存尚未被声明语句使用的类型
+    private ArrayDeque<SourceCodeType> typeStack = new ArrayDeque<>();
 
-    // 定义空元素为-1
-    private int emptyElement = -1;
     // 符号表
     private SymbolTable symbolTable = null;
 
-    @Override
-    public void whenAccept(Status currentStatus) {
-        // 当接受时，符号表已经更新完了，什么都不做即可
-    }
-
-    // 语义栈栈顶元素
-    private String curType;
-    @Override
-    public void whenReduce(Status currentStatus, Production production) {
-        switch (production.index()) {
-            case 4 -> { // S -> D id;
-                /* 更新符号表中相应变量的type信息 */
-
-                // 先出栈右侧符号的属性
-                for (int i = 0; i < production.body().size() - 1; i++) {
-                    typeStack.pop();
-                }
-
-                // 此时符号表对应变量的type属性应该在栈顶
-                curType = typeStack.pop();
-
-                if (curType.equals("int")) {
-                    String symbolName = symbolTable.getFirstNullTypeSymbolName();
-                    symbolTable.setSelectedSymbolType(symbolName, SourceCodeType.Int);
-                }
-                typeStack.push(String.valueOf(emptyElement));
-            }
-            case 5 -> { // D -> int
-                /* 将D的属性type入栈 */
-                String type = typeStack.pop();
-                typeStack.push(type);
+    public SemanticAnalyzer() {
+        // 移入 int 时将类型压栈, 只关心类型本身, 不需要读取词法单元
+        onShift("int", new ShiftHandler() {
+            @Override
+            public void handle(Status currentStatus, Token currentToken) {
+                typeStack.push(SourceCodeType.Int);
             }
-            default -> {
-                /* 其他产生式，直接压入空记录占位 */
-                for (Term body: production.body()) {
-                    typeStack.pop();
-                }
-                typeStack.push(String.valueOf(emptyElement));
+
+            @Override
+            public void handle(Status currentStatus, TokenBuffer.Cursor cursor) {
+                typeStack.push(SourceCodeType.Int);
             }
-        }
+        });
+
+        // S -> D id: 更新符号表中相应变量的type信息
+        onReduce(4, (status, production) -> {
+            // D -> int 不改变栈, 此时栈顶即为 D 的type属性
+            final var type = typeStack.pop();
+            final var symbolName = symbolTable.getFirstNullTypeSymbolName();
+            symbolTable.setSelectedSymbolType(symbolName, type);
+        });
     }
 
     @Override
-    public void whenShift(Status currentStatus, Token currentToken) {
-        // 当做移进动作时，直接向符号栈内压入Token对应符号
-        Token curToken = currentToken;
-        typeStack.push(String.valueOf(currentToken.getKind()));
+    public void whenAccept(Status currentStatus) {
+        // 当接受时，符号表已经更新完了，什么都不做即可
     }
 
     @Override
@@ -81,4 +62,3 @@ public class SemanticAnalyzer implements ActionObserver {
         }
     }
 }
-
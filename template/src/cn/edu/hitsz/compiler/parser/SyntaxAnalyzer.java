@@ -2,11 +2,13 @@ package cn.edu.hitsz.compiler.parser;
 
 import cn.edu.hitsz.compiler.NotImplementedException;
 import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenBuffer;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
 import cn.edu.hitsz.compiler.parser.table.*;
 import cn.edu.hitsz.compiler.symtab.SymbolTable;
 
-import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 
@@ -24,6 +26,9 @@ public class SyntaxAnalyzer {
     private final SymbolTable symbolTable;
     private final List<ActionObserver> observers = new ArrayList<>();
 
+    // 按产生式与终结符预先整理好的观察者处理函数, 观察者列表改变后置为 null, 在下次通知时重新构造
+    private ObserverDispatch dispatch;
+
     public SyntaxAnalyzer(SymbolTable symbolTable) {
         this.symbolTable = symbolTable;
     }
@@ -36,6 +41,7 @@ public class SyntaxAnalyzer {
     public void registerObserver(ActionObserver observer) {
         observers.add(observer);
         observer.setSymbolTable(symbolTable);
+        dispatch = null;
     }
 
     /**
@@ -45,8 +51,29 @@ public class SyntaxAnalyzer {
      * @param currentToken  当前词法单元
      */
     public void callWhenInShift(Status currentStatus, Token currentToken) {
-        for (final var listener : observers) {
-            listener.whenShift(currentStatus, currentToken);
+        if (pipeline != null) {
+            pipeline.shift(currentStatus, currentToken);
+            return;
+        }
+        for (final var handler : getDispatch().shiftHandlers(currentToken.getKind().getOrdinal())) {
+            handler.handle(currentStatus, currentToken);
+        }
+    }
+
+    /**
+     * 在从 TokenBuffer 中读取词法单元并执行 shift 动作时通知各个观察者
+     *
+     * @param currentStatus 当前状态
+     * @param cursor        指向当前词法单元的游标
+     */
+    public void callWhenInShift(Status currentStatus, TokenBuffer.Cursor cursor) {
+        if (pipeline != null) {
+            // 各消费者从自己的游标读取同一个词法单元
+            pipeline.shift(currentStatus);
+            return;
+        }
+        for (final var handler : getDispatch().shiftHandlers(cursor.getKindOrdinal())) {
+            handler.handle(currentStatus, cursor);
         }
     }
 
@@ -57,8 +84,25 @@ public class SyntaxAnalyzer {
      * @param production    待规约的产生式
      */
     public void callWhenInReduce(Status currentStatus, Production production) {
-        for (final var listener : observers) {
-            listener.whenReduce(currentStatus, production);
+        if (listReductions != null && listReductions.reduce(currentStatus, production)) {
+            return;
+        }
+        notifyReduce(currentStatus, production);
+    }
+
+    /**
+     * 将 (原文法的) 规约通知各个观察者
+     *
+     * @param currentStatus 当前状态
+     * @param production    待规约的产生式
+     */
+    private void notifyReduce(Status currentStatus, Production production) {
+        if (pipeline != null) {
+            pipeline.reduce(currentStatus, production);
+            return;
+        }
+        for (final var handler : getDispatch().reduceHandlers(production.index())) {
+            handler.handle(currentStatus, production);
         }
     }
 
@@ -68,6 +112,13 @@ public class SyntaxAnalyzer {
      * @param currentStatus 当前状态
      */
     public void callWhenInAccept(Status currentStatus) {
+        if (listReductions != null) {
+            listReductions.accept(currentStatus);
+        }
+        if (pipeline != null) {
+            pipeline.accept(currentStatus);
+            return;
+        }
         for (final var listener : observers) {
             listener.whenAccept(currentStatus);
         }
@@ -75,162 +126,377 @@ public class SyntaxAnalyzer {
 
     private Iterator<Token> tokenIterator;
     public void loadTokens(Iterable<Token> tokens) {
+        // 直接使用传入的词法单元序列, 不再复制一份
+        loadTokens(tokens.iterator());
+    }
 
-        // 将所有的token存入tokenList中
-        List<Token> tokenList = new ArrayList<>();
-        for (Token token : tokens) {
-            tokenList.add(token);
-        }
+    /**
+     * 加载按需给出的词法单元流, 驱动程序在分析时才会逐个拉取词法单元
+     *
+     * @param tokens 词法单元迭代器, 最后一个词法单元应为 EOF
+     */
+    public void loadTokens(Iterator<Token> tokens) {
+        tokenIterator = tokens;
+        tokenBuffer = null;
+        tokenCursor = null;
+    }
 
-        // 将tokenList 转化为tokenIterator
-        tokenIterator = tokenList.listIterator();
+    private TokenBuffer.Cursor tokenCursor;
 
+    /**
+     * 加载按列存储的词法单元序列, 驱动程序会通过游标读取词法单元, 分析过程中不再为词法单元分配对象
+     *
+     * @param tokens 词法单元序列
+     */
+    public void loadTokens(TokenBuffer tokens) {
+        tokenIterator = null;
+        tokenBuffer = tokens;
+        tokenCursor = tokens.cursor();
     }
 
-    // 定义状态栈
-    private ArrayDeque<Status> statusStack = new ArrayDeque<>();
-    // 定义符号栈
-    private ArrayDeque<Term> termStack = new ArrayDeque<>();
+    /**
+     * 加载一个游标, 只读取其范围内的词法单元, 供 ParallelFrontEnd 分段分析使用
+     *
+     * @param cursor 游标
+     */
+    void loadTokens(TokenBuffer.Cursor cursor) {
+        tokenIterator = null;
+        tokenBuffer = null;
+        tokenCursor = cursor;
+    }
+
+    // 从 TokenBuffer 读取时的词法单元序列, 观察者在各自线程中运行时, 每个观察者都需要自己的游标
+    private TokenBuffer tokenBuffer;
+
+    // 状态栈, 保存状态编号; 规约时只需要产生式头就能查 goto 表, 所以不再维护符号栈
+    private int[] statusStack = new int[64];
+    private int top = -1;
 
     // LR 分析表
     private LRTable table;
 
-    // 当前状态与当前符号
-    private Status currentStatus;
-    private Term currentTerm;
-
     public void loadLRTable(LRTable table) {
 
-        // 将LR table存到这个类中并将initStatus存起来
+        // 将LR table存到这个类中并将initStatus压入状态栈
+        // 两种分析表以最近一次加载的为准, 所以同时丢弃之前加载的编译后的分析表
         this.table = table;
-        statusStack.push(table.getInit());
-
-        // 初始状态
-        Status initStatus = table.getInit();
+        this.compiledTable = null;
+        top = -1;
+        pushStatus(table.getInit().index());
+        loadListRewrite(table.getListRewrite());
 
     }
 
-    public void run() {
-        // 你需要根据上面的输入来实现 LR 语法分析的驱动程序
-        // 请分别在遇到 Shift, Reduce, Accept 的时候调用上面的 callWhenInShift, callWhenInReduce, callWhenInAccept
-        // 否则用于为实验二打分的产生式输出可能不会正常工作
-
-        // 用于判断是否可以开始判断下一个token的标记变量
-        boolean nextValid = true;
+    // 编译后的分析表, 不为 null 时 run 只使用该表
+    private CompiledLRTable compiledTable;
 
-        // 当前状态
-        Token currentToken = null;
-
-        while (tokenIterator.hasNext()) {
-            // 查了Goto表后缓冲区并没有压进栈，因此不能下一个
-            if (nextValid) {
-                currentToken = tokenIterator.next();
-            }
+    /**
+     * 加载编译后的分析表 (稠密或压缩的), 之后的分析过程只查询其中的 int 数组, 不再访问 Status 中的 Map
+     * <br>
+     * 与 {@link #loadLRTable(LRTable)} 以最近一次加载的表为准, 之前加载的 LRTable 会被丢弃
+     *
+     * @param table 编译后的分析表
+     */
+    public void loadLRTable(CompiledLRTable table) {
+        this.compiledTable = table;
+        this.table = null;
+        top = -1;
+        loadListRewrite(table.getListRewrite());
+    }
 
-            // 更新当前状态和当前符号
-            updateCurrentStatusAndCurrentTerm();
+    // 分析表改写过列表时, 用于将列表的规约还原为原文法的规约序列
+    private ListReductions listReductions;
 
-            Action nextAction = table.getAction(currentStatus, currentToken);
+    private void loadListRewrite(ListRewrite rewrite) {
+        listReductions = rewrite == null ? null : new ListReductions(rewrite, this::notifyReduce);
+    }
 
-            // 归约
-            if (nextAction.getKind() == Action.ActionKind.Reduce) {
+    // 各观察者是否在自己的线程中处理动作事件, 以及运行时使用的事件环形缓冲区
+    private boolean concurrentObservers = false;
+    private ParseEventPipeline pipeline;
 
-                // 更新符号栈
-                Production production = nextAction.getProduction();
-                // 将产生式右部的字符都弹出栈, 将产生式左部的字符压入栈
-                updateTermStack(production);
+    /**
+     * 设置各观察者是否在各自的线程中运行
+     * <br>
+     * 启用后驱动程序只将动作事件写入有界的环形缓冲区, 每个观察者在自己的线程中按相同顺序处理全部事件, 分析时间不再是所有观察者的耗时之和.
+     * run 在所有观察者都处理完毕后才返回, 观察者的结果与顺序执行时相同. 观察者之间不应共享除符号表以外的可变状态.
+     *
+     * @param concurrentObservers 是否启用
+     */
+    public void setConcurrentObservers(boolean concurrentObservers) {
+        this.concurrentObservers = concurrentObservers;
+    }
 
-                // 更新状态栈
-                updateStatusStack(nextAction);
+    // 是否跳过单产生式的规约, 以及为当前编译后的分析表求出的规约链
+    private boolean bypassUnitReductions = false;
+    private UnitReductionBypass unitBypass;
+    private CompiledLRTable unitBypassTable;
+    private long bypassedReductions = 0;
 
-                // 更新当前状态和当前符号
-                updateCurrentStatusAndCurrentTerm();
+    /**
+     * 设置是否一步完成单产生式 (如 A -> B, E -> A) 的连续规约. 默认为否. 只对编译后的分析表生效.
+     * <br>
+     * 启用后规约出一个非终结符时, 驱动程序按 {@link UnitReductionBypass} 预先求出的链直接转移到最后的状态, 不再逐个查 ACTION 与 GOTO 表.
+     * 链中的产生式只通知登记了对应处理函数的观察者 (普通的观察者关心所有产生式, 因此仍会收到全部通知), 通知的顺序与状态都与逐步规约时相同.
+     *
+     * @param bypassUnitReductions 是否启用
+     */
+    public void setBypassUnitReductions(boolean bypassUnitReductions) {
+        this.bypassUnitReductions = bypassUnitReductions;
+    }
 
-                // 调用观察者函数
-                callWhenInReduce(currentStatus, production);
+    /**
+     * @return 到目前为止一步完成 (没有查表) 的单产生式规约数
+     */
+    public long getBypassedReductionCount() {
+        return bypassedReductions;
+    }
 
-                // 更新状态变量
-                nextValid = false;
-            }
+    public void run() {
+        // 你需要根据上面的输入来实现 LR 语法分析的驱动程序
+        // 请分别在遇到 Shift, Reduce, Accept 的时候调用上面的 callWhenInShift, callWhenInReduce, callWhenInAccept
+        // 否则用于为实验二打分的产生式输出可能不会正常工作
+        if (!concurrentObservers || observers.isEmpty()) {
+            runDriver();
+            return;
+        }
 
-            // 移进
-            else if (nextAction.getKind() == Action.ActionKind.Shift) {
+        final var events = new ParseEventPipeline(observers, tokenCursor != null ? tokenBuffer : null, 1 << 14, 256);
+        events.start();
+        pipeline = events;
+        try {
+            runDriver();
+        } catch (RuntimeException e) {
+            events.abort(e);
+            throw e;
+        } finally {
+            pipeline = null;
+        }
+        events.finish();
+    }
 
-                // 更新符号栈（将对应符号写入）
-                termStack.push(currentToken.getKind());
+    private void runDriver() {
+        if (listReductions != null) {
+            listReductions.reset();
+        }
+        if (compiledTable != null) {
+            runCompiled(new int[]{compiledTable.initState()}, false);
+        } else {
+            runTable();
+        }
+    }
 
-                // 更新状态栈（将对应状态压入栈中）
-                statusStack.push(nextAction.getStatus());
+    /**
+     * 使用 LRTable 的驱动程序
+     */
+    private void runTable() {
 
-                // 更新当前状态和当前符号
-                updateCurrentStatusAndCurrentTerm();
+        // 用于判断是否可以开始判断下一个token的标记变量
+        boolean nextValid = true;
 
-                // 调用观察者函数
-                callWhenInShift(currentStatus, currentToken);
+        // 当前词法单元, 从游标读取时只记录其类型
+        Token currentToken = null;
+        TokenKind currentKind = null;
 
-                // 更新标记变量
-                nextValid = true;
+        // 读到 EOF 后迭代器已经没有剩余的词法单元, 但仍需继续规约直至 accept
+        while (!nextValid || hasNextToken()) {
+            // 查了Goto表后缓冲区并没有压进栈，因此不能下一个
+            if (nextValid) {
+                if (tokenCursor != null) {
+                    tokenCursor.advance();
+                    currentKind = tokenCursor.getKind();
+                } else {
+                    currentToken = tokenIterator.next();
+                    currentKind = currentToken.getKind();
+                }
             }
-            else if (nextAction.getKind() == Action.ActionKind.Accept) {
-
-                // 更新符号栈和状态站
-                termStack.pop();
 
-                // 更新当前状态和当前符号
-                updateCurrentStatusAndCurrentTerm();
-
-                callWhenInAccept(currentStatus);
-
-                // 更新标记变量
-                nextValid = true;
-                break;
+            // 当前状态为状态栈的栈顶
+            final var currentStatus = table.getStatus(statusStack[top]);
+            final Action nextAction = table.getAction(currentStatus, currentKind);
+
+            switch (nextAction.getKind()) {
+                // 归约
+                case Reduce -> {
+                    final var production = nextAction.getProduction();
+
+                    // 一次弹出产生式体对应的所有状态, 再按产生式头查 goto 表
+                    top -= production.body().size();
+                    final var nextStatus = table.getGoto(table.getStatus(statusStack[top]), production.head());
+                    pushStatus(nextStatus.index());
+
+                    // 调用观察者函数
+                    callWhenInReduce(nextStatus, production);
+
+                    // 更新状态变量
+                    nextValid = false;
+                }
+
+                // 移进
+                case Shift -> {
+                    // 将对应状态压入栈中
+                    final var nextStatus = nextAction.getStatus();
+                    pushStatus(nextStatus.index());
+
+                    // 调用观察者函数
+                    if (tokenCursor != null) {
+                        callWhenInShift(nextStatus, tokenCursor);
+                    } else {
+                        callWhenInShift(nextStatus, currentToken);
+                    }
+
+                    // 更新标记变量
+                    nextValid = true;
+                }
+
+                case Accept -> {
+                    callWhenInAccept(currentStatus);
+                    return;
+                }
+
+                case Error -> throw new SyntaxErrorException("Syntax error at %s in status %d"
+                    .formatted(currentKind, currentStatus.index()));
             }
         }
     }
 
     /**
-     * 更新当前状态和当前符号
+     * 从给定的状态栈开始分析一段词法单元, 供 ParallelFrontEnd 分段分析使用
+     * <br>
+     * 只支持编译后的分析表. 分段时词法单元读完即停止, 不会因此报错; 若规约需要弹出给定状态栈之下的状态, 则说明该段不能独立分析,
+     * 与语法错误一样抛出 {@link SyntaxErrorException}. 观察者抛出的异常原样传出.
+     *
+     * @param initialStack 初始的状态栈, 最后一个元素为栈顶
+     * @param partial      是否为分段分析
+     * @return 分段分析时, 词法单元读完后的状态栈; 接受时为 null
+     * @throws SyntaxErrorException 出现语法错误, 或该段不能从给定的状态栈开始分析
      */
-    private void updateCurrentStatusAndCurrentTerm() {
-        // 当前状态为状态栈的栈顶元素
-        currentStatus = statusStack.peek();
-        // 当前符号为符号栈的栈顶元素
-        currentTerm = termStack.peek();
+    int[] runFrom(int[] initialStack, boolean partial) {
+        if (compiledTable == null) {
+            throw new RuntimeException("Partial parsing needs a compiled LR table");
+        }
+        return runCompiled(initialStack, partial);
     }
 
     /**
-     * 更新符号栈
+     * 使用编译后的分析表的驱动程序
+     * <br>
+     * 状态栈是一个 int 数组, 规约时直接将栈顶指针下移产生式体的长度; 符号栈只用于确定 goto 的非终结符, 而这可以直接从产生式得到, 所以不再维护
+     *
+     * @param initialStack 初始的状态栈
+     * @param partial      词法单元读完时是否停止并返回状态栈, 而不是报错
+     * @return 停止时的状态栈, 接受时为 null
      */
-    private void updateTermStack(Production production) {
-        // 将产生式右部的字符都弹出栈
-        for (Term term: production.body()) {
-            termStack.pop();
+    private int[] runCompiled(int[] initialStack, boolean partial) {
+        final var table = compiledTable;
+        if (bypassUnitReductions && (unitBypass == null || unitBypassTable != table)) {
+            unitBypass = UnitReductionBypass.of(table);
+            unitBypassTable = table;
         }
-        // 将产生式左部的字符压入栈
-        termStack.push(production.head());
+        final var bypass = bypassUnitReductions ? unitBypass : null;
+        var stack = Arrays.copyOf(initialStack, Math.max(64, initialStack.length * 2));
+        var top = initialStack.length - 1;
+
+        Token currentToken = null;
+        var terminal = 0;
+        var readNext = true;
+        while (true) {
+            if (readNext) {
+                if (!hasNextToken()) {
+                    if (partial) {
+                        return Arrays.copyOf(stack, top + 1);
+                    }
+                    throw new SyntaxErrorException("Unexpected end of tokens");
+                }
+                if (tokenCursor != null) {
+                    tokenCursor.advance();
+                    terminal = tokenCursor.getKindOrdinal();
+                } else {
+                    currentToken = tokenIterator.next();
+                    terminal = currentToken.getKind().getOrdinal();
+                }
+                readNext = false;
+            }
 
-        // 更新状态站和符号栈
-        updateCurrentStatusAndCurrentTerm();
+            final var packed = table.action(stack[top], terminal);
+            switch (CompiledLRTable.kindOf(packed)) {
+                case CompiledLRTable.SHIFT -> {
+                    final var next = CompiledLRTable.targetOf(packed);
+                    if (++top == stack.length) {
+                        stack = Arrays.copyOf(stack, stack.length * 2);
+                    }
+                    stack[top] = next;
+
+                    if (tokenCursor != null) {
+                        callWhenInShift(table.getStatus(next), tokenCursor);
+                    } else {
+                        callWhenInShift(table.getStatus(next), currentToken);
+                    }
+                    readNext = true;
+                }
+                case CompiledLRTable.REDUCE -> {
+                    final var production = CompiledLRTable.targetOf(packed);
+                    top -= table.productionLength(production);
+                    if (top < 0) {
+                        throw new SyntaxErrorException("Reduction below the initial status stack");
+                    }
+                    final var next = table.gotoState(stack[top], table.productionHead(production));
+                    if (++top == stack.length) {
+                        stack = Arrays.copyOf(stack, stack.length * 2);
+                    }
+                    stack[top] = next;
+
+                    callWhenInReduce(table.getStatus(next), table.getProduction(production));
+
+                    // 紧接着的单产生式规约一步完成, 只为关心它们的观察者补发通知
+                    final var chain = bypass == null ? null
+                        : bypass.chain(stack[top - 1], table.productionHead(production), terminal);
+                    if (chain != null) {
+                        stack[top] = chain[chain.length - 1];
+                        for (int i = 0; i < chain.length; i += 2) {
+                            if (getDispatch().reduceHandlers(chain[i]).length != 0) {
+                                callWhenInReduce(table.getStatus(chain[i + 1]), table.getProduction(chain[i]));
+                            }
+                        }
+                        bypassedReductions += chain.length / 2;
+                    }
+                }
+                case CompiledLRTable.ACCEPT -> {
+                    callWhenInAccept(table.getStatus(stack[top]));
+                    return null;
+                }
+                default -> throw new SyntaxErrorException("Syntax error at %s in status %d"
+                    .formatted(TokenKind.fromOrdinal(terminal), stack[top]));
+            }
+        }
     }
 
     /**
-     * 更新状态栈
+     * @return 观察者的分派表, 观察者列表改变后重新构造
      */
-    private void updateStatusStack(Action action) {
-        Production production = action.getProduction();
-        // 弹出对应状态
-        for (Term term : production.body()) {
-            statusStack.pop();
+    private ObserverDispatch getDispatch() {
+        if (dispatch == null) {
+            dispatch = new ObserverDispatch(observers);
         }
+        return dispatch;
+    }
 
-        // 更新当前状态和当前栈顶状态
-        updateCurrentStatusAndCurrentTerm();
-
-        // 加入新添加的状态
-        Status nextStatus = table.getGoto(currentStatus, (NonTerminal) currentTerm);
-        statusStack.push(nextStatus);
+    /**
+     * @return 词法单元序列中是否还有剩余的词法单元
+     */
+    private boolean hasNextToken() {
+        return tokenCursor != null ? tokenCursor.hasNext() : tokenIterator.hasNext();
+    }
 
-        // 更新当前状态和当前栈顶状态
-        updateCurrentStatusAndCurrentTerm();
+    /**
+     * 将状态压入状态栈, 栈满时扩容
+     *
+     * @param status 状态编号
+     */
+    private void pushStatus(int status) {
+        if (++top == statusStack.length) {
+            statusStack = Arrays.copyOf(statusStack, statusStack.length * 2);
+        }
+        statusStack[top] = status;
     }
 }
@@ -0,0 +1,13 @@
+package cn.edu.hitsz.compiler.parser;
+
+/**
+ * 语法分析失败时抛出的异常: 遇到 ACTION 表中的错误项, 词法单元提前结束,
+ * 或分段分析时规约需要弹出给定状态栈之下的状态
+ * <br>
+ * 与观察者等其他代码抛出的异常区分开, {@link ParallelFrontEnd} 只在捕获到它时放弃分段的结果, 改为按顺序重新分析.
+ */
+public class SyntaxErrorException extends RuntimeException {
+    public SyntaxErrorException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,204 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import cn.edu.hitsz.compiler.utils.FilePathConfig;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * 以二进制文件形式预先编译好的 LR 分析表
+ * <br>
+ * 文件中保存的是 {@link CompressedLRTable} 压缩后的各数组, 加载时直接将文件映射进内存, 查表时从映射中读取,
+ * 不需要解析 CSV, 也不需要构造 Status, Action 等对象. 文件格式 (全部为大端序):
+ * <pre>
+ * int  魔数 "LRTB"
+ * int  格式版本
+ * long 语法哈希, 由语法文件与码点文件的内容计算得到
+ * int  状态数, 终结符数, 非终结符数, 起始状态, 产生式编号上界
+ * 之后依次为 10 个数组, 每个数组先是一个 int 长度, 再是对应个数的 int:
+ *      产生式体长度, 产生式头列号,
+ *      ACTION 的 default, base, next, check, GOTO 的 default, base, next, check
+ * </pre>
+ * 由于终结符以码点文件中的顺序编号, 非终结符与产生式以语法文件中的顺序编号, 这两个文件改变后表就失效了.
+ * 加载时会重新计算语法哈希, 与文件中记录的不一致时拒绝加载.
+ *
+ * @see CompressedLRTable 压缩方式
+ */
+public class BinaryLRTable extends CompiledLRTable {
+    private static final int MAGIC = 0x4C525442;
+    private static final int VERSION = 1;
+    private static final int ARRAY_COUNT = 10;
+
+    private final IntBuffer actionDefault;
+    private final IntBuffer actionBase;
+    private final IntBuffer actionNext;
+    private final IntBuffer actionCheck;
+
+    private final IntBuffer gotoDefault;
+    private final IntBuffer gotoBase;
+    private final IntBuffer gotoNext;
+    private final IntBuffer gotoCheck;
+
+    /**
+     * 将 LR 分析表 (由 TableLoader 从 CSV 读入, 或由 TableGenerator 构造) 压缩后写入二进制文件
+     * <br>
+     * 文件中的产生式按语法文件中的行号解释, 所以不支持改写过列表的表
+     *
+     * @param table LR 分析表
+     * @param path  输出路径
+     */
+    public static void write(LRTable table, String path) {
+        if (table.getListRewrite() != null) {
+            throw new RuntimeException("Cannot write a table built from a rewritten grammar");
+        }
+        final var compressed = CompressedLRTable.compile(table);
+        final var productionLength = new int[compressed.productionCount()];
+        final var productionHead = new int[compressed.productionCount()];
+        for (int production = 0; production < productionLength.length; production++) {
+            productionLength[production] = compressed.productionLength(production);
+            productionHead[production] = compressed.productionHead(production);
+        }
+
+        try (final var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(Paths.get(path))))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(grammarHash());
+            out.writeInt(compressed.stateCount());
+            out.writeInt(compressed.terminalCount());
+            out.writeInt(compressed.nonTerminalCount());
+            out.writeInt(compressed.initState());
+            out.writeInt(compressed.productionCount());
+
+            writeArray(out, productionLength);
+            writeArray(out, productionHead);
+            for (final var array : compressed.getArrays()) {
+                writeArray(out, array);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception on " + path, e);
+        }
+    }
+
+    /**
+     * 映射并加载二进制分析表
+     *
+     * @param path 文件路径
+     * @return 分析表
+     * @throws RuntimeException 文件格式或版本不符, 或语法文件与码点文件在生成该表之后被修改过
+     */
+    public static BinaryLRTable load(String path) {
+        final ByteBuffer buffer;
+        try (final var channel = FileChannel.open(Paths.get(path))) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception on " + path, e);
+        }
+
+        if (buffer.getInt() != MAGIC) {
+            throw new RuntimeException("Not a binary LR table: " + path);
+        }
+        final var version = buffer.getInt();
+        if (version != VERSION) {
+            throw new RuntimeException("Unsupported binary LR table version %d in %s".formatted(version, path));
+        }
+        if (buffer.getLong() != grammarHash()) {
+            throw new RuntimeException("Grammar or coding map changed since " + path + " was generated");
+        }
+        return new BinaryLRTable(buffer);
+    }
+
+    @Override
+    public int action(int state, int terminal) {
+        final var index = actionBase.get(state) + terminal;
+        return actionCheck.get(index) == state ? actionNext.get(index) : actionDefault.get(state);
+    }
+
+    @Override
+    public int gotoState(int state, int nonTerminal) {
+        final var index = gotoBase.get(nonTerminal) + state;
+        return gotoCheck.get(index) == nonTerminal ? gotoNext.get(index) : gotoDefault.get(nonTerminal);
+    }
+
+    private BinaryLRTable(ByteBuffer buffer) {
+        this(buffer, buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt());
+    }
+
+    private BinaryLRTable(ByteBuffer buffer, int stateCount, int terminalCount, int nonTerminalCount,
+                          int initState, int productionCount) {
+        super(stateCount, terminalCount, nonTerminalCount, initState,
+            readArray(buffer, productionCount), readArray(buffer, productionCount));
+
+        final var arrays = new IntBuffer[ARRAY_COUNT - 2];
+        for (int i = 0; i < arrays.length; i++) {
+            arrays[i] = sliceArray(buffer);
+        }
+        actionDefault = arrays[0];
+        actionBase = arrays[1];
+        actionNext = arrays[2];
+        actionCheck = arrays[3];
+        gotoDefault = arrays[4];
+        gotoBase = arrays[5];
+        gotoNext = arrays[6];
+        gotoCheck = arrays[7];
+    }
+
+    /**
+     * 读出一个数组, 用于只有产生式个数那么长的小数组
+     */
+    private static int[] readArray(ByteBuffer buffer, int expectedLength) {
+        final var length = buffer.getInt();
+        if (length != expectedLength) {
+            throw new RuntimeException("Corrupted binary LR table");
+        }
+        final var array = new int[length];
+        buffer.asIntBuffer().get(array);
+        buffer.position(buffer.position() + length * Integer.BYTES);
+        return array;
+    }
+
+    /**
+     * 不复制, 直接以映射中的一段作为数组
+     */
+    private static IntBuffer sliceArray(ByteBuffer buffer) {
+        final var length = buffer.getInt();
+        final var slice = buffer.slice(buffer.position(), length * Integer.BYTES).asIntBuffer();
+        buffer.position(buffer.position() + length * Integer.BYTES);
+        return slice;
+    }
+
+    private static void writeArray(DataOutputStream out, int[] array) throws IOException {
+        out.writeInt(array.length);
+        for (final var value : array) {
+            out.writeInt(value);
+        }
+    }
+
+    /**
+     * 生成的直接编码分析程序 ({@link cn.edu.hitsz.compiler.parser.DirectCodedParser}) 也以此检查两个文件是否被修改过
+     *
+     * @return 语法文件与码点文件内容的 64 位 FNV-1a 哈希
+     */
+    public static long grammarHash() {
+        var hash = 0xcbf29ce484222325L;
+        for (final var path : new String[]{FilePathConfig.GRAMMAR_PATH, FilePathConfig.CODING_MAP_PATH}) {
+            final byte[] bytes;
+            try {
+                bytes = Files.readAllBytes(Paths.get(path));
+            } catch (IOException e) {
+                throw new RuntimeException("IO Exception on " + path, e);
+            }
+            for (final var b : bytes) {
+                hash = (hash ^ (b & 0xFF)) * 0x100000001b3L;
+            }
+            // 两个文件之间的分隔
+            hash = (hash ^ 0xFF) * 0x100000001b3L;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,305 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * 由 {@link LRTable} 编译得到的, 以整数编号表示的 LR 分析表
+ * <br>
+ * 状态, 终结符, 非终结符与产生式都以整数编号表示: 状态使用其在 LR 表中的编号, 终结符使用 {@link TokenKind#getOrdinal()},
+ * 非终结符使用其在 GOTO 表中的列号, 产生式使用其在语法文件中的行号.
+ * <br>
+ * ACTION 表的每一项被编码为一个 int: 低 {@link #KIND_BITS} 位为动作类型, 其余高位为移入的目标状态或规约的产生式编号.
+ * GOTO 表的每一项为目标状态, 不存在时为 -1. 子类决定这两张表的存储方式, 驱动程序只通过 {@link #action} 与 {@link #gotoState} 查表.
+ * <br>
+ * 为了在分析过程中通知观察者, 该表同样保留了编号到 Status 与 Production 对象的映射.
+ *
+ * @see DenseLRTable 以二维数组存储
+ * @see CompressedLRTable 以行位移方式压缩存储
+ */
+public abstract class CompiledLRTable {
+    /**
+     * 编码后的动作类型, 0 为错误, 这样未填写的表项默认就是错误动作
+     */
+    public static final int ERROR = 0;
+    public static final int SHIFT = 1;
+    public static final int REDUCE = 2;
+    public static final int ACCEPT = 3;
+
+    /**
+     * 动作类型所占的位数
+     */
+    public static final int KIND_BITS = 2;
+    private static final int KIND_MASK = (1 << KIND_BITS) - 1;
+
+    // 每个产生式的长度与产生式头在 GOTO 表中的列号, 以产生式编号为下标
+    private final int[] productionLength;
+    private final int[] productionHead;
+
+    // 编号到对象的映射, 从二进制文件加载时在第一次用到时才构造.
+    // 同一张表可能被多个线程共用 (见 ParallelFrontEnd), 所以整个数组填好之后才赋给字段, 同时构造的线程得到的内容相同
+    private final int stateCount;
+    private volatile Status[] statuses;
+    private volatile Production[] productions;
+    private final int initState;
+    private final int terminalCount;
+    private final int nonTerminalCount;
+
+    // 构造 LR 表时对文法所做的列表改写, 没有时为 null
+    private final ListRewrite listRewrite;
+
+    /**
+     * @param packed 编码后的动作
+     * @return 动作类型, 为 {@link #ERROR}, {@link #SHIFT}, {@link #REDUCE}, {@link #ACCEPT} 之一
+     */
+    public static int kindOf(int packed) {
+        return packed & KIND_MASK;
+    }
+
+    /**
+     * @param packed 编码后的动作
+     * @return 移入动作的目标状态, 或规约动作的产生式编号
+     */
+    public static int targetOf(int packed) {
+        return packed >>> KIND_BITS;
+    }
+
+    /**
+     * @param kind   动作类型
+     * @param target 目标状态或产生式编号
+     * @return 编码后的动作
+     */
+    public static int pack(int kind, int target) {
+        return (target << KIND_BITS) | kind;
+    }
+
+    /**
+     * @param state    状态编号
+     * @param terminal 终结符序号
+     * @return 编码后的动作
+     */
+    public abstract int action(int state, int terminal);
+
+    /**
+     * @param state       状态编号
+     * @param nonTerminal 非终结符列号
+     * @return 应转移到的状态, 不存在时为 -1
+     */
+    public abstract int gotoState(int state, int nonTerminal);
+
+    /**
+     * @param production 产生式编号
+     * @return 产生式体的长度
+     */
+    public int productionLength(int production) {
+        return productionLength[production];
+    }
+
+    /**
+     * @param production 产生式编号
+     * @return 产生式头在 GOTO 表中的列号
+     */
+    public int productionHead(int production) {
+        return productionHead[production];
+    }
+
+    /**
+     * @return 起始状态的编号
+     */
+    public int initState() {
+        return initState;
+    }
+
+    public int stateCount() {
+        return stateCount;
+    }
+
+    /**
+     * @return 产生式编号的上界 (不含)
+     */
+    public int productionCount() {
+        return productionLength.length;
+    }
+
+    public int terminalCount() {
+        return terminalCount;
+    }
+
+    public int nonTerminalCount() {
+        return nonTerminalCount;
+    }
+
+    /**
+     * @param state 状态编号
+     * @return 对应的 Status 对象
+     */
+    public Status getStatus(int state) {
+        var resolved = statuses;
+        if (resolved == null) {
+            resolved = new Status[stateCount];
+            for (int index = 0; index < stateCount; index++) {
+                resolved[index] = Status.create(index);
+            }
+            statuses = resolved;
+        }
+        return resolved[state];
+    }
+
+    /**
+     * @param production 产生式编号
+     * @return 对应的 Production 对象
+     */
+    public Production getProduction(int production) {
+        var resolved = productions;
+        if (resolved == null) {
+            // 产生式的编号即其在语法文件中的行号
+            resolved = new Production[productionLength.length];
+            for (final var candidate : GrammarInfo.getProductionsInOrder()) {
+                if (candidate.index() < resolved.length) {
+                    resolved[candidate.index()] = candidate;
+                }
+            }
+            productions = resolved;
+        }
+        return resolved[production];
+    }
+
+    /**
+     * 构造全部状态与产生式对象, 之后 {@link #getStatus} 与 {@link #getProduction} 只读取已有的数组
+     * <br>
+     * 在把表交给多个线程之前调用, 各线程就不必再各自构造一份
+     */
+    public void resolveObjects() {
+        if (stateCount > 0) {
+            getStatus(0);
+        }
+        if (productionLength.length > 0) {
+            getProduction(0);
+        }
+    }
+
+    /**
+     * @return 构造原 LR 表时对文法所做的列表改写, 未改写时为 null
+     * @see LRTable#getListRewrite()
+     */
+    public ListRewrite getListRewrite() {
+        return listRewrite;
+    }
+
+    /**
+     * 由已经编号的数据直接构造, 状态与产生式对象在第一次用到时才构造
+     *
+     * @param stateCount       状态数
+     * @param terminalCount    终结符数
+     * @param nonTerminalCount 非终结符数
+     * @param initState        起始状态编号
+     * @param productionLength 以产生式编号为下标的产生式体长度
+     * @param productionHead   以产生式编号为下标的产生式头列号
+     */
+    protected CompiledLRTable(int stateCount, int terminalCount, int nonTerminalCount, int initState,
+                              int[] productionLength, int[] productionHead) {
+        this.stateCount = stateCount;
+        this.terminalCount = terminalCount;
+        this.nonTerminalCount = nonTerminalCount;
+        this.initState = initState;
+        this.productionLength = productionLength;
+        this.productionHead = productionHead;
+        this.listRewrite = null;
+    }
+
+    protected CompiledLRTable(LRTable table) {
+        final var statusList = table.getStatusInIndexOrder();
+        final var nonTerminals = table.getNonTerminals();
+        terminalCount = TokenKind.ordinalCount();
+        nonTerminalCount = nonTerminals.size();
+
+        stateCount = statusList.stream().mapToInt(Status::index).max().orElse(-1) + 1;
+        final var statusArray = new Status[stateCount];
+        for (final var status : statusList) {
+            statusArray[status.index()] = status;
+        }
+        for (int index = 0; index < stateCount; index++) {
+            if (statusArray[index] == null) {
+                statusArray[index] = Status.create(index);
+            }
+        }
+        statuses = statusArray;
+        initState = table.getInit().index();
+        listRewrite = table.getListRewrite();
+
+        final var nonTerminalColumns = columnsOf(nonTerminals);
+
+        // 先收集所有被规约的产生式, 确定产生式编号的范围
+        final var reduced = new HashMap<Integer, Production>();
+        for (final var status : statusList) {
+            for (final var entry : status.action().values()) {
+                if (entry.getKind() == Action.ActionKind.Reduce) {
+                    reduced.put(entry.getProduction().index(), entry.getProduction());
+                }
+            }
+        }
+        final var productionCount = reduced.keySet().stream().mapToInt(Integer::intValue).max().orElse(-1) + 1;
+        final var productionArray = new Production[productionCount];
+        productionLength = new int[productionCount];
+        productionHead = new int[productionCount];
+        for (final var production : reduced.values()) {
+            productionArray[production.index()] = production;
+            productionLength[production.index()] = production.body().size();
+            productionHead[production.index()] = nonTerminalColumns.get(production.head());
+        }
+        productions = productionArray;
+    }
+
+    /**
+     * @return 以 [状态编号][终结符序号] 为下标的编码后的 ACTION 表
+     */
+    protected static int[][] denseActions(LRTable table) {
+        final var statusList = table.getStatusInIndexOrder();
+        final var stateCount = statusList.stream().mapToInt(Status::index).max().orElse(-1) + 1;
+        final var actions = new int[stateCount][TokenKind.ordinalCount()];
+        for (final var status : statusList) {
+            final var row = actions[status.index()];
+            for (final var entry : status.action().entrySet()) {
+                row[entry.getKey().getOrdinal()] = encode(entry.getValue());
+            }
+        }
+        return actions;
+    }
+
+    /**
+     * @return 以 [状态编号][非终结符列号] 为下标的 GOTO 表, 不存在的项为 -1
+     */
+    protected static int[][] denseGotos(LRTable table) {
+        final var statusList = table.getStatusInIndexOrder();
+        final var nonTerminals = table.getNonTerminals();
+        final var stateCount = statusList.stream().mapToInt(Status::index).max().orElse(-1) + 1;
+        final var gotos = new int[stateCount][nonTerminals.size()];
+        for (final var status : statusList) {
+            final var row = gotos[status.index()];
+            for (int column = 0; column < nonTerminals.size(); column++) {
+                final var target = status.getGoto(nonTerminals.get(column));
+                row[column] = target.isError() ? -1 : target.index();
+            }
+        }
+        return gotos;
+    }
+
+    private static int encode(Action action) {
+        return switch (action.getKind()) {
+            case Shift -> pack(SHIFT, action.getStatus().index());
+            case Reduce -> pack(REDUCE, action.getProduction().index());
+            case Accept -> pack(ACCEPT, 0);
+            case Error -> ERROR;
+        };
+    }
+
+    private static HashMap<NonTerminal, Integer> columnsOf(List<NonTerminal> nonTerminals) {
+        final var columns = new HashMap<NonTerminal, Integer>();
+        for (int column = 0; column < nonTerminals.size(); column++) {
+            columns.put(nonTerminals.get(column), column);
+        }
+        return columns;
+    }
+}
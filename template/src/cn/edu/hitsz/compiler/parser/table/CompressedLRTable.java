@@ -0,0 +1,225 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * 以行位移 (row displacement) 方式压缩存储的 LR 分析表, 与 yacc/bison 的做法相同
+ * <br>
+ * ACTION 表中绝大多数表项都是错误动作. 每个状态先选出一个默认动作: 若该状态有规约动作, 则取出现次数最多的规约动作作为默认规约,
+ * 该状态下原本的错误表项也一并改为默认规约 (规约不消耗输入, 错误会在之后移入前被发现); 否则默认动作为错误.
+ * 去掉等于默认动作的表项后, 每一行只剩少数几项, 各行以不同的偏移量 base 叠放进同一个一维数组 next 中,
+ * 同时在 check 中记录每个位置属于哪一行. 查表时若 {@code check[base[state] + terminal] == state} 则取 next 中的值, 否则取默认动作.
+ * <br>
+ * GOTO 表按列 (非终结符) 以同样方式压缩, 每个非终结符取出现次数最多的目标状态作为默认值. 正确的分析过程不会查询 GOTO 表中不存在的项,
+ * 所以不存在的项可以被视为任意值.
+ *
+ * @see CompiledLRTable 编码方式
+ */
+public class CompressedLRTable extends CompiledLRTable {
+    private final int[] actionDefault;
+    private final int[] actionBase;
+    private final int[] actionNext;
+    private final int[] actionCheck;
+
+    private final int[] gotoDefault;
+    private final int[] gotoBase;
+    private final int[] gotoNext;
+    private final int[] gotoCheck;
+
+    /**
+     * 编译并压缩 LR 分析表
+     *
+     * @param table LR 分析表
+     * @return 压缩后的分析表
+     */
+    public static CompressedLRTable compile(LRTable table) {
+        return new CompressedLRTable(table);
+    }
+
+    @Override
+    public int action(int state, int terminal) {
+        final var index = actionBase[state] + terminal;
+        return actionCheck[index] == state ? actionNext[index] : actionDefault[state];
+    }
+
+    @Override
+    public int gotoState(int state, int nonTerminal) {
+        final var index = gotoBase[nonTerminal] + state;
+        return gotoCheck[index] == nonTerminal ? gotoNext[index] : gotoDefault[nonTerminal];
+    }
+
+    /**
+     * @return 不压缩时 ACTION 与 GOTO 表共有多少个 int
+     */
+    public int getDenseSize() {
+        return stateCount() * (terminalCount() + nonTerminalCount());
+    }
+
+    /**
+     * @return 压缩后各数组共有多少个 int
+     */
+    public int getCompressedSize() {
+        return actionDefault.length + actionBase.length + actionNext.length + actionCheck.length
+            + gotoDefault.length + gotoBase.length + gotoNext.length + gotoCheck.length;
+    }
+
+    /**
+     * @return 压缩比, 即不压缩时的大小与压缩后的大小之比
+     */
+    public double compressionRatio() {
+        return (double) getDenseSize() / getCompressedSize();
+    }
+
+    /**
+     * @return 压缩后的各数组, 依次为 ACTION 的 default, base, next, check 与 GOTO 的 default, base, next, check
+     */
+    List<int[]> getArrays() {
+        return List.of(actionDefault, actionBase, actionNext, actionCheck, gotoDefault, gotoBase, gotoNext, gotoCheck);
+    }
+
+    @Override
+    public String toString() {
+        return "CompressedLRTable(%d states, %d -> %d ints, ratio %.2f)"
+            .formatted(stateCount(), getDenseSize(), getCompressedSize(), compressionRatio());
+    }
+
+    private CompressedLRTable(LRTable table) {
+        super(table);
+
+        // ACTION 表按行压缩, 每行选出默认动作
+        final var actions = denseActions(table);
+        actionDefault = new int[actions.length];
+        for (int state = 0; state < actions.length; state++) {
+            actionDefault[state] = mostFrequent(actions[state], ERROR, true);
+        }
+        final var actionRows = new Displacement(actions, actionDefault, terminalCount(), ERROR);
+        actionBase = actionRows.base;
+        actionNext = actionRows.next;
+        actionCheck = actionRows.check;
+
+        // GOTO 表按列压缩, 先转置为以非终结符为行
+        final var gotos = denseGotos(table);
+        final var columns = new int[nonTerminalCount()][gotos.length];
+        for (int state = 0; state < gotos.length; state++) {
+            for (int column = 0; column < nonTerminalCount(); column++) {
+                columns[column][state] = gotos[state][column];
+            }
+        }
+        gotoDefault = new int[columns.length];
+        for (int column = 0; column < columns.length; column++) {
+            gotoDefault[column] = mostFrequent(columns[column], -1, false);
+        }
+        final var gotoRows = new Displacement(columns, gotoDefault, gotos.length, -1);
+        gotoBase = gotoRows.base;
+        gotoNext = gotoRows.next;
+        gotoCheck = gotoRows.check;
+    }
+
+    /**
+     * 选出一行中的默认值
+     *
+     * @param row         一行表项
+     * @param absent      代表不存在的值
+     * @param reduceOnly  是否只在规约动作中选择
+     * @return 出现次数最多的值, 不存在可选的值时为 absent
+     */
+    private static int mostFrequent(int[] row, int absent, boolean reduceOnly) {
+        final var counts = new HashMap<Integer, Integer>();
+        var best = absent;
+        var bestCount = 0;
+        for (final var value : row) {
+            if (value == absent || (reduceOnly && kindOf(value) != REDUCE)) {
+                continue;
+            }
+            final var count = counts.merge(value, 1, Integer::sum);
+            if (count > bestCount) {
+                best = value;
+                bestCount = count;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 把若干稀疏的行以不同偏移量叠放进同一组数组中
+     * <br>
+     * 每行去掉等于默认值的项后, 按项数从多到少依次放置, 每行取第一个不与已放置的项冲突的偏移量.
+     * 数组末尾留出一整行的宽度, 使得查表时下标不会越界.
+     */
+    private static class Displacement {
+        private final int[] base;
+        private final int[] next;
+        private final int[] check;
+
+        Displacement(int[][] rows, int[] defaults, int width, int absent) {
+            // 每行需要保留的列
+            final var kept = new ArrayList<int[]>(rows.length);
+            for (int row = 0; row < rows.length; row++) {
+                final var values = rows[row];
+                final var defaultValue = defaults[row];
+                kept.add(IntStream.range(0, width)
+                    .filter(column -> values[column] != defaultValue && (defaultValue == absent || values[column] != absent))
+                    .toArray());
+            }
+
+            final var order = new ArrayList<Integer>();
+            for (int row = 0; row < rows.length; row++) {
+                order.add(row);
+            }
+            order.sort(Comparator.comparingInt((Integer row) -> kept.get(row).length).reversed());
+
+            base = new int[rows.length];
+            var usedNext = new int[Math.max(16, width * 2)];
+            var usedCheck = new int[usedNext.length];
+            Arrays.fill(usedCheck, -1);
+            var length = 0;
+            for (final var row : order) {
+                final var columns = kept.get(row);
+                if (columns.length == 0) {
+                    continue;
+                }
+
+                var offset = 0;
+                while (!fits(usedCheck, offset, columns)) {
+                    offset++;
+                }
+                final var required = offset + width;
+                if (required > usedCheck.length) {
+                    final var capacity = Math.max(required, usedCheck.length * 2);
+                    usedNext = Arrays.copyOf(usedNext, capacity);
+                    final var oldLength = usedCheck.length;
+                    usedCheck = Arrays.copyOf(usedCheck, capacity);
+                    Arrays.fill(usedCheck, oldLength, capacity, -1);
+                }
+                for (final var column : columns) {
+                    usedNext[offset + column] = rows[row][column];
+                    usedCheck[offset + column] = row;
+                }
+                base[row] = offset;
+                length = Math.max(length, offset + columns[columns.length - 1] + 1);
+            }
+
+            // 留出一整行的宽度, 这样任意 base + column 都不会越界
+            next = Arrays.copyOf(usedNext, length + width);
+            check = Arrays.copyOf(usedCheck, length + width);
+            if (usedCheck.length < check.length) {
+                Arrays.fill(check, usedCheck.length, check.length, -1);
+            }
+        }
+
+        private static boolean fits(int[] check, int offset, int[] columns) {
+            for (final var column : columns) {
+                final var index = offset + column;
+                if (index < check.length && check[index] != -1) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
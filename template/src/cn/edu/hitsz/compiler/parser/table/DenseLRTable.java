@@ -0,0 +1,40 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+/**
+ * 以二维数组存储的 LR 分析表
+ * <br>
+ * ACTION 与 GOTO 表分别是 {@code int[状态][终结符]} 与 {@code int[状态][非终结符]} 的数组,
+ * 查表只需两次数组下标访问, 不需要求哈希, 也不需要构造 Action 对象.
+ *
+ * @see CompiledLRTable 编码方式
+ */
+public class DenseLRTable extends CompiledLRTable {
+    private final int[][] action;
+    private final int[][] goto_;
+
+    /**
+     * 编译 LR 分析表
+     *
+     * @param table LR 分析表
+     * @return 编译得到的稠密分析表
+     */
+    public static DenseLRTable compile(LRTable table) {
+        return new DenseLRTable(table);
+    }
+
+    @Override
+    public int action(int state, int terminal) {
+        return action[state][terminal];
+    }
+
+    @Override
+    public int gotoState(int state, int nonTerminal) {
+        return goto_[state][nonTerminal];
+    }
+
+    private DenseLRTable(LRTable table) {
+        super(table);
+        this.action = denseActions(table);
+        this.goto_ = denseGotos(table);
+    }
+}
@@ -0,0 +1,374 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+
+import java.util.*;
+
+/**
+ * 文法的 nullable, FIRST 与 FOLLOW 集合
+ * <br>
+ * 终结符集合都以 {@link BitSet} 表示, 第 i 位代表 {@link TokenKind#getOrdinal()} 为 i 的终结符. 非终结符按在语法文件中第一次出现的顺序编号,
+ * 每个非终结符对应一行.
+ * <br>
+ * FIRST 与 FOLLOW 都可以写成 "F(x) = F'(x) 并上所有 x R y 的 F(y)" 的形式:
+ * <ul>
+ *     <li>FIRST: A R X 当且仅当存在 A -> alpha X beta 且 alpha 可以推出空串, F'(A) 为这样位置上直接出现的终结符</li>
+ *     <li>FOLLOW: B R A 当且仅当存在 A -> alpha B beta 且 beta 可以推出空串, F'(B) 为所有这样的 FIRST(beta) 之并</li>
+ * </ul>
+ * 因此二者都用 {@link #digraph} 求出: 按强连通分量的逆拓扑序处理, 每条依赖只处理一次, 互相递归的非终结符落在同一分量中并共享结果.
+ */
+public class GrammarAnalysis {
+    private final List<Production> productions;
+    private final List<NonTerminal> nonTerminals = new ArrayList<>();
+    private final Map<NonTerminal, Integer> nonTerminalIds = new HashMap<>();
+
+    private final BitSet nullable = new BitSet();
+    private final BitSet[] first;
+    private final BitSet[] follow;
+
+    /**
+     * 分析语法文件中的文法
+     *
+     * @return 分析结果
+     */
+    public static GrammarAnalysis analyze() {
+        return analyze(GrammarInfo.getProductionsInOrder());
+    }
+
+    /**
+     * 分析给定的文法
+     *
+     * @param productions 产生式, 第一条产生式的头为开始符号
+     * @return 分析结果
+     */
+    public static GrammarAnalysis analyze(List<Production> productions) {
+        return new GrammarAnalysis(productions);
+    }
+
+    /**
+     * @return 所有非终结符, 下标即其编号
+     */
+    public List<NonTerminal> getNonTerminals() {
+        return Collections.unmodifiableList(nonTerminals);
+    }
+
+    /**
+     * @param nonTerminal 非终结符
+     * @return 其编号
+     */
+    public int indexOf(NonTerminal nonTerminal) {
+        final var id = nonTerminalIds.get(nonTerminal);
+        if (id == null) {
+            throw new RuntimeException("Unknown non-terminal: " + nonTerminal);
+        }
+        return id;
+    }
+
+    /**
+     * @param term 文法符号
+     * @return 该符号是否可以推出空串
+     */
+    public boolean isNullable(Term term) {
+        return term instanceof NonTerminal nonTerminal && nullable.get(indexOf(nonTerminal));
+    }
+
+    /**
+     * @param sequence 文法符号串
+     * @return 该符号串是否可以推出空串
+     */
+    public boolean isNullable(List<? extends Term> sequence) {
+        for (final var term : sequence) {
+            if (!isNullable(term)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param term 文法符号
+     * @return 其 FIRST 集合 (不含空串), 返回值是副本
+     */
+    public BitSet firstBits(Term term) {
+        final var result = new BitSet();
+        addFirst(result, term);
+        return result;
+    }
+
+    /**
+     * @param sequence 文法符号串
+     * @return 其 FIRST 集合 (不含空串), 返回值是副本
+     */
+    public BitSet firstBits(List<? extends Term> sequence) {
+        final var result = new BitSet();
+        for (final var term : sequence) {
+            addFirst(result, term);
+            if (!isNullable(term)) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param nonTerminal 非终结符
+     * @return 其 FOLLOW 集合, 返回值是副本
+     */
+    public BitSet followBits(NonTerminal nonTerminal) {
+        return (BitSet) follow[indexOf(nonTerminal)].clone();
+    }
+
+    /**
+     * @param term 文法符号
+     * @return 其 FIRST 集合, 按终结符编号排列
+     */
+    public Set<TokenKind> getFirst(Term term) {
+        return toTokenKinds(firstBits(term));
+    }
+
+    /**
+     * @param nonTerminal 非终结符
+     * @return 其 FOLLOW 集合, 按终结符编号排列
+     */
+    public Set<TokenKind> getFollow(NonTerminal nonTerminal) {
+        return toTokenKinds(follow[indexOf(nonTerminal)]);
+    }
+
+    /**
+     * @param bits 以终结符编号表示的集合
+     * @return 对应的终结符集合
+     */
+    public static Set<TokenKind> toTokenKinds(BitSet bits) {
+        final var result = new LinkedHashSet<TokenKind>();
+        bits.stream().mapToObj(TokenKind::fromOrdinal).forEach(result::add);
+        return result;
+    }
+
+    private GrammarAnalysis(List<Production> productions) {
+        this.productions = productions;
+        for (final var production : productions) {
+            addNonTerminal(production.head());
+        }
+        for (final var production : productions) {
+            for (final var term : production.body()) {
+                if (term instanceof NonTerminal nonTerminal) {
+                    addNonTerminal(nonTerminal);
+                }
+            }
+        }
+
+        calcNullable();
+        first = calcFirst();
+        follow = calcFollow();
+    }
+
+    private void addNonTerminal(NonTerminal nonTerminal) {
+        if (!nonTerminalIds.containsKey(nonTerminal)) {
+            nonTerminalIds.put(nonTerminal, nonTerminals.size());
+            nonTerminals.add(nonTerminal);
+        }
+    }
+
+    private void addFirst(BitSet result, Term term) {
+        if (term instanceof TokenKind tokenKind) {
+            result.set(tokenKind.getOrdinal());
+        } else if (term instanceof NonTerminal nonTerminal) {
+            result.or(first[indexOf(nonTerminal)]);
+        }
+    }
+
+    /**
+     * 以工作表方式计算 nullable: 记录每条产生式体中还有几个符号未被确认可以推出空串,
+     * 某个非终结符被确认后只需更新含有它的产生式, 减到 0 时产生式头也被确认
+     */
+    private void calcNullable() {
+        final var remaining = new int[productions.size()];
+        final var occurrences = new ArrayList<List<Integer>>();
+        for (int i = 0; i < nonTerminals.size(); i++) {
+            occurrences.add(new ArrayList<>());
+        }
+
+        final var worklist = new ArrayDeque<Integer>();
+        for (int p = 0; p < productions.size(); p++) {
+            final var body = productions.get(p).body();
+            remaining[p] = body.size();
+            for (final var term : body) {
+                if (term instanceof NonTerminal nonTerminal) {
+                    occurrences.get(indexOf(nonTerminal)).add(p);
+                }
+            }
+            if (body.isEmpty()) {
+                worklist.add(p);
+            }
+        }
+
+        while (!worklist.isEmpty()) {
+            final var head = indexOf(productions.get(worklist.pollFirst()).head());
+            if (nullable.get(head)) {
+                continue;
+            }
+            nullable.set(head);
+            for (final var p : occurrences.get(head)) {
+                if (--remaining[p] == 0) {
+                    worklist.addLast(p);
+                }
+            }
+        }
+    }
+
+    private BitSet[] calcFirst() {
+        final var initial = newRows();
+        final var relation = newRelation();
+        for (final var production : productions) {
+            final var head = indexOf(production.head());
+            // 依次扫描产生式体, 直到遇到不能推出空串的符号
+            for (final var term : production.body()) {
+                if (term instanceof TokenKind tokenKind) {
+                    initial[head].set(tokenKind.getOrdinal());
+                    break;
+                }
+
+                final var symbol = indexOf((NonTerminal) term);
+                relation.get(head).add(symbol);
+                if (!nullable.get(symbol)) {
+                    break;
+                }
+            }
+        }
+        return digraph(relation, initial);
+    }
+
+    private BitSet[] calcFollow() {
+        final var initial = newRows();
+        final var relation = newRelation();
+        // 开始符号后面跟着 EOF
+        initial[indexOf(productions.get(0).head())].set(TokenKind.eof().getOrdinal());
+
+        for (final var production : productions) {
+            final var head = indexOf(production.head());
+            final var body = production.body();
+            // 从后往前扫描, 同时维护 beta 的 FIRST 以及 beta 是否可以推出空串
+            final var rest = new BitSet();
+            var restNullable = true;
+            for (int i = body.size() - 1; i >= 0; i--) {
+                final var term = body.get(i);
+                if (term instanceof NonTerminal nonTerminal) {
+                    final var symbol = indexOf(nonTerminal);
+                    initial[symbol].or(rest);
+                    if (restNullable) {
+                        relation.get(symbol).add(head);
+                    }
+                }
+
+                if (!isNullable(term)) {
+                    rest.clear();
+                    restNullable = false;
+                }
+                addFirst(rest, term);
+            }
+        }
+
+        final var result = digraph(relation, initial);
+        // 对于找完所有产生式了都还没没有 follow 的非终结符
+        // 它必然是一个没有被使用的非终结符, 这意味着它的 follow 就是 EOF
+        for (int i = 0; i < result.length; i++) {
+            if (result[i].isEmpty()) {
+                result[i] = new BitSet();
+                result[i].set(TokenKind.eof().getOrdinal());
+            }
+        }
+        return result;
+    }
+
+    private BitSet[] newRows() {
+        final var rows = new BitSet[nonTerminals.size()];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new BitSet();
+        }
+        return rows;
+    }
+
+    private List<List<Integer>> newRelation() {
+        final var relation = new ArrayList<List<Integer>>(nonTerminals.size());
+        for (int i = 0; i < nonTerminals.size(); i++) {
+            relation.add(new ArrayList<>());
+        }
+        return relation;
+    }
+
+    /**
+     * DeRemer-Pennello 的 digraph 算法: 求 F(x) = F'(x) 并上所有 x R y 的 F(y), 其中 R 可以有环
+     * <br>
+     * 与 Tarjan 强连通分量算法相同, 在一遍深度优先搜索中求出, 同一强连通分量中的节点共享同一个结果集合 (因此不应修改返回的集合).
+     * 搜索用显式的栈进行, 不会因文法过大而栈溢出.
+     *
+     * @param relation 以编号表示的关系 R, relation.get(x) 为所有满足 x R y 的 y
+     * @param initial  F'
+     * @return F
+     */
+    static BitSet[] digraph(List<? extends List<Integer>> relation, BitSet[] initial) {
+        final var count = initial.length;
+        final var result = new BitSet[count];
+        // depth[x] 为 0 表示未访问, 为 Integer.MAX_VALUE 表示所在分量已经求出
+        final var depth = new int[count];
+        final var entered = new int[count];
+        final var stack = new int[count];
+        var stackTop = 0;
+        // 模拟递归调用的栈: 正在访问的节点, 以及下一条要访问的边
+        final var callNode = new int[count];
+        final var callEdge = new int[count];
+        var callTop = 0;
+
+        for (int root = 0; root < count; root++) {
+            if (depth[root] != 0) {
+                continue;
+            }
+
+            stack[stackTop++] = root;
+            depth[root] = entered[root] = stackTop;
+            result[root] = (BitSet) initial[root].clone();
+            callNode[callTop] = root;
+            callEdge[callTop++] = 0;
+
+            while (callTop > 0) {
+                final var x = callNode[callTop - 1];
+                final var edges = relation.get(x);
+                if (callEdge[callTop - 1] < edges.size()) {
+                    final var y = edges.get(callEdge[callTop - 1]++);
+                    if (depth[y] == 0) {
+                        stack[stackTop++] = y;
+                        depth[y] = entered[y] = stackTop;
+                        result[y] = (BitSet) initial[y].clone();
+                        callNode[callTop] = y;
+                        callEdge[callTop++] = 0;
+                    } else {
+                        depth[x] = Math.min(depth[x], depth[y]);
+                        result[x].or(result[y]);
+                    }
+                    continue;
+                }
+
+                // x 是其强连通分量的根, 分量中的所有节点都取 x 的结果
+                if (depth[x] == entered[x]) {
+                    while (true) {
+                        final var top = stack[--stackTop];
+                        depth[top] = Integer.MAX_VALUE;
+                        result[top] = result[x];
+                        if (top == x) {
+                            break;
+                        }
+                    }
+                }
+
+                // 返回到调用者
+                callTop--;
+                if (callTop > 0) {
+                    final var caller = callNode[callTop - 1];
+                    depth[caller] = Math.min(depth[caller], depth[x]);
+                    result[caller].or(result[x]);
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -21,7 +21,20 @@ public class LRTable {
      */
     public Action getAction(Status status, Token token) {
         final var tokenKind = token.getKind();
-        return status.getAction(tokenKind);
+        return getAction(status, tokenKind);
+    }
+
+    /**
+     * 根据当前状态与当前终结符获取对应动作
+     * <br>
+     * 直接以状态编号与 TokenKind 的序号作为下标查表, 不需要对终结符求哈希
+     *
+     * @param status    当前状态
+     * @param tokenKind 当前终结符
+     * @return 应采取的动作
+     */
+    public Action getAction(Status status, TokenKind tokenKind) {
+        return actions[status.index() * kindCount + tokenKind.getOrdinal()];
     }
 
     /**
@@ -35,6 +48,14 @@ public class LRTable {
         return status.getGoto(nonTerminal);
     }
 
+    /**
+     * @param index 状态编号
+     * @return 对应的状态
+     */
+    public Status getStatus(int index) {
+        return statusInIndexOrder.get(index);
+    }
+
     /**
      * @return 起始状态
      */
@@ -42,6 +63,14 @@ public class LRTable {
         return statusInIndexOrder.get(0);
     }
 
+    /**
+     * @return 构造该表时对文法所做的列表改写, 未改写时为 null
+     * @see TableGenerator#setRewriteRightRecursion(boolean)
+     */
+    public ListRewrite getListRewrite() {
+        return listRewrite;
+    }
+
     public void dumpTable(String path) {
         final var text = new StringBuilder();
         // table head
@@ -68,6 +97,27 @@ public class LRTable {
         FileUtils.writeFile(path, text.toString());
     }
 
+    /**
+     * @return 按编号排列的所有状态
+     */
+    List<Status> getStatusInIndexOrder() {
+        return statusInIndexOrder;
+    }
+
+    /**
+     * @return 表中出现的所有终结符, 即 ACTION 表的列
+     */
+    List<TokenKind> getTerminals() {
+        return terminals;
+    }
+
+    /**
+     * @return 表中出现的所有非终结符, 即 GOTO 表的列
+     */
+    List<NonTerminal> getNonTerminals() {
+        return nonTerminals;
+    }
+
     private String convertToGotoString(Status status) {
         if (status.equals(Status.error())) {
             return "";
@@ -77,12 +127,30 @@ public class LRTable {
     }
 
     LRTable(List<Status> statusInIndexOrder, List<TokenKind> terminals, List<NonTerminal> nonTerminals) {
+        this(statusInIndexOrder, terminals, nonTerminals, null);
+    }
+
+    LRTable(List<Status> statusInIndexOrder, List<TokenKind> terminals, List<NonTerminal> nonTerminals,
+            ListRewrite listRewrite) {
+        this.listRewrite = listRewrite;
         this.statusInIndexOrder = statusInIndexOrder;
         this.terminals = terminals;
         this.nonTerminals = nonTerminals;
+
+        // 将各状态的 action 表展开为以 (状态编号, TokenKind 序号) 为下标的稠密数组
+        this.kindCount = TokenKind.ordinalCount();
+        this.actions = new Action[statusInIndexOrder.size() * kindCount];
+        for (final var status : statusInIndexOrder) {
+            for (int ordinal = 0; ordinal < kindCount; ordinal++) {
+                actions[status.index() * kindCount + ordinal] = status.getAction(TokenKind.fromOrdinal(ordinal));
+            }
+        }
     }
 
     private final List<Status> statusInIndexOrder;
     private final List<TokenKind> terminals;
     private final List<NonTerminal> nonTerminals;
+    private final int kindCount;
+    private final Action[] actions;
+    private final ListRewrite listRewrite;
 }
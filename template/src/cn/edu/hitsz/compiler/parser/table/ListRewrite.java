@@ -0,0 +1,169 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 将右递归的列表产生式改写为左递归
+ * <br>
+ * 形如 L -> alpha L 与 L -> alpha 的一对产生式 (如 S_list -> S Semicolon S_list; S_list -> S Semicolon) 使 LR 分析时每个 alpha
+ * 都留在状态栈中, 直到读到列表末尾才一起规约, 栈深度与列表长度成正比. 改写为 L -> L alpha 与 L -> alpha 后, 每读完一个 alpha 就规约一次,
+ * 栈深度与列表长度无关.
+ * <br>
+ * 两种文法的规约序列只在 L 的两条产生式上不同, 而且原文法中 L 的所有规约都连续地发生在列表结束时, 即规约 L 所在的产生式之前
+ * (或接受之前). 因此驱动程序只需在分析时不通知改写后的 L 的规约, 记下其次数 n, 到列表结束时再依次通知一次 L -> alpha
+ * 与 n - 1 次 L -> alpha L, 观察者看到的就是原文法的规约序列. 嵌套的同一列表各自计数.
+ * <br>
+ * 为使 "列表结束" 可以由规约确定, 只改写满足以下条件的 L:
+ * <ul>
+ *     <li>L 恰有这两条产生式, alpha 非空且不含 L</li>
+ *     <li>L 在其他产生式中只作为产生式体的最后一个符号出现</li>
+ * </ul>
+ * 改写后的 L -> L alpha 沿用原 L -> alpha L 的行号, 因此产生式编号的范围不变.
+ */
+public class ListRewrite {
+    private final List<Production> productions;
+    private final List<NonTerminal> lists = new ArrayList<>();
+
+    // 以产生式行号为下标: 属于哪个被改写的列表 (-1 表示不属于), 是否为 L -> alpha, 以及规约它时结束的列表 (-1 表示没有)
+    private final int[] listOf;
+    private final boolean[] isBase;
+    private final int[] closes;
+
+    // 以列表编号为下标的原产生式
+    private final List<Production> baseProductions = new ArrayList<>();
+    private final List<Production> stepProductions = new ArrayList<>();
+
+    /**
+     * 改写文法中所有满足条件的右递归列表
+     *
+     * @param productions 原文法的产生式
+     * @return 改写结果, 没有可改写的列表时 {@link #isEmpty()} 为 true
+     */
+    public static ListRewrite of(List<Production> productions) {
+        return new ListRewrite(productions);
+    }
+
+    /**
+     * @return 改写后的产生式, 顺序与行号都与原文法相同
+     */
+    public List<Production> getProductions() {
+        return productions;
+    }
+
+    /**
+     * @return 被改写的列表非终结符, 下标即列表编号
+     */
+    public List<NonTerminal> getLists() {
+        return Collections.unmodifiableList(lists);
+    }
+
+    public boolean isEmpty() {
+        return lists.isEmpty();
+    }
+
+    /**
+     * @param productionIndex 产生式行号
+     * @return 该产生式所属的被改写列表的编号, 不属于任何列表时为 -1
+     */
+    public int listOf(int productionIndex) {
+        return productionIndex < listOf.length ? listOf[productionIndex] : -1;
+    }
+
+    /**
+     * @param productionIndex 被改写列表的产生式行号
+     * @return 是否为 L -> alpha, 即每个列表实例中第一次规约的产生式
+     */
+    public boolean isBase(int productionIndex) {
+        return isBase[productionIndex];
+    }
+
+    /**
+     * @param productionIndex 产生式行号
+     * @return 规约该产生式时结束的列表编号, 没有时为 -1
+     */
+    public int closedBy(int productionIndex) {
+        return productionIndex < closes.length ? closes[productionIndex] : -1;
+    }
+
+    /**
+     * @param list 列表编号
+     * @return 原文法中的 L -> alpha
+     */
+    public Production getBaseProduction(int list) {
+        return baseProductions.get(list);
+    }
+
+    /**
+     * @param list 列表编号
+     * @return 原文法中的 L -> alpha L
+     */
+    public Production getStepProduction(int list) {
+        return stepProductions.get(list);
+    }
+
+    private ListRewrite(List<Production> original) {
+        final var limit = original.stream().mapToInt(Production::index).max().orElse(-1) + 1;
+        listOf = new int[limit];
+        isBase = new boolean[limit];
+        closes = new int[limit];
+        Arrays.fill(listOf, -1);
+        Arrays.fill(closes, -1);
+
+        final var rewritten = new ArrayList<>(original);
+        for (final var head : original.stream().map(Production::head).distinct().toList()) {
+            final var own = original.stream().filter(production -> production.head().equals(head)).toList();
+            if (own.size() != 2) {
+                continue;
+            }
+            final var step = own.get(0).body().size() > own.get(1).body().size() ? own.get(0) : own.get(1);
+            final var base = step == own.get(0) ? own.get(1) : own.get(0);
+            final var alpha = base.body();
+            if (alpha.isEmpty() || alpha.contains(head) || step.body().size() != alpha.size() + 1
+                || !step.body().subList(0, alpha.size()).equals(alpha) || !head.equals(step.body().get(alpha.size()))) {
+                continue;
+            }
+            if (!onlyAtEnd(original, head, base, step)) {
+                continue;
+            }
+
+            final var list = lists.size();
+            lists.add(head);
+            baseProductions.add(base);
+            stepProductions.add(step);
+            listOf[base.index()] = list;
+            listOf[step.index()] = list;
+            isBase[base.index()] = true;
+
+            final var body = new ArrayList<Term>(alpha.size() + 1);
+            body.add(head);
+            body.addAll(alpha);
+            rewritten.set(original.indexOf(step), new Production(step.index(), head, body));
+        }
+
+        for (final var production : original) {
+            final var body = production.body();
+            if (listOf[production.index()] < 0 && !body.isEmpty()) {
+                closes[production.index()] = lists.indexOf(body.get(body.size() - 1));
+            }
+        }
+        this.productions = Collections.unmodifiableList(rewritten);
+    }
+
+    private static boolean onlyAtEnd(List<Production> productions, NonTerminal head, Production base, Production step) {
+        for (final var production : productions) {
+            if (production == base || production == step) {
+                continue;
+            }
+            final var body = production.body();
+            for (int i = 0; i + 1 < body.size(); i++) {
+                if (body.get(i).equals(head)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
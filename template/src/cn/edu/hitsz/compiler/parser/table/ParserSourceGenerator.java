@@ -0,0 +1,248 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.DirectCodedParser;
+import cn.edu.hitsz.compiler.utils.FileUtils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 根据 LR 分析表生成直接编码的语法分析程序的 Java 源代码
+ * <br>
+ * 生成的类继承 {@link DirectCodedParser}, 整个自动机生成为一个 run 方法, 状态栈与当前词法单元都是局部变量:
+ * <ul>
+ *     <li>外层以状态编号为分支, 内层以当前终结符序号为分支, 相同动作的终结符合并为一个分支</li>
+ *     <li>移入与规约都直接写为对状态栈的操作: 规约将栈顶指针下移产生式体的长度, 再求出 goto 到的状态;
+ *     若该产生式头的 goto 只有一个目标, 则直接写为常量, 否则调用以 switch 实现的 goto 方法 (以出现次数最多的目标作为 default 分支)</li>
+ *     <li>各分支只求出新的栈顶状态, 之后压栈与通知观察者的代码为所有分支共用, 只有通知观察者与读入词法单元时才调用基类的方法</li>
+ * </ul>
+ * 分支都是常量, JIT 可以将其编译为跳转表, 不再需要查表. 注意 HotSpot 默认不编译超过 8000 字节码的方法,
+ * 文法很大时需要加上 {@code -XX:-DontCompileHugeMethods}.
+ * <br>
+ * 生成的代码中终结符以 {@link TokenKind#getOrdinal()}, 产生式以其行号编码. 语法文件或码点文件改变之后需要重新生成,
+ * 生成的代码中记录了与 {@link BinaryLRTable} 相同的语法哈希, 构造时不一致则拒绝运行.
+ */
+public class ParserSourceGenerator {
+    private final CompiledLRTable table;
+    private final List<NonTerminal> nonTerminals;
+
+    /**
+     * @param table LR 分析表 (由 TableLoader 从 CSV 读入, 或由 TableGenerator 构造), 不支持改写过列表的表
+     */
+    public ParserSourceGenerator(LRTable table) {
+        if (table.getListRewrite() != null) {
+            throw new RuntimeException("Cannot generate a parser from a rewritten grammar");
+        }
+        this.table = DenseLRTable.compile(table);
+        this.nonTerminals = table.getNonTerminals();
+    }
+
+    /**
+     * 生成源代码并写入文件
+     *
+     * @param path        输出路径
+     * @param packageName 生成的类所在的包
+     * @param className   生成的类名
+     */
+    public void writeTo(String path, String packageName, String className) {
+        FileUtils.writeFile(path, generate(packageName, className));
+    }
+
+    /**
+     * @param packageName 生成的类所在的包
+     * @param className   生成的类名
+     * @return 生成的源代码
+     */
+    public String generate(String packageName, String className) {
+        final var out = new StringBuilder();
+        out.append("package ").append(packageName).append(";\n\n");
+        if (!packageName.equals(DirectCodedParser.class.getPackageName())) {
+            out.append("import ").append(DirectCodedParser.class.getName()).append(";\n");
+        }
+        out.append("import cn.edu.hitsz.compiler.symtab.SymbolTable;\n\n");
+        out.append("/**\n");
+        out.append(" * 由 ParserSourceGenerator 根据 LR 分析表生成的语法分析程序, 不要手动修改此文件\n");
+        out.append(" */\n");
+        out.append("public class ").append(className).append(" extends DirectCodedParser {\n");
+
+        generateConstants(out);
+
+        out.append("    public ").append(className).append("(SymbolTable symbolTable) {\n");
+        out.append("        super(symbolTable, ").append(table.stateCount()).append(", GRAMMAR_HASH, PRODUCTIONS, TERMINALS);\n");
+        out.append("    }\n\n");
+
+        generateRun(out);
+        for (int nonTerminal = 0; nonTerminal < table.nonTerminalCount(); nonTerminal++) {
+            if (!isSingleTarget(nonTerminal) && isReduced(nonTerminal)) {
+                generateGoto(out, nonTerminal);
+            }
+        }
+
+        out.append("}\n");
+        return out.toString();
+    }
+
+    private void generateConstants(StringBuilder out) {
+        out.append("    // 生成时的语法哈希, 产生式 (以行号为下标) 与终结符 (以序号为下标), 用于检查语法文件与码点文件是否被修改过\n");
+        out.append("    private static final long GRAMMAR_HASH = 0x").append(Long.toHexString(BinaryLRTable.grammarHash())).append("L;\n");
+        out.append("    private static final String[] PRODUCTIONS = {\n");
+        for (int production = 0; production < table.productionCount(); production++) {
+            final var value = table.getProduction(production);
+            out.append("        ").append(value == null ? "null" : quote(value.toString())).append(",\n");
+        }
+        out.append("    };\n");
+        out.append("    private static final String[] TERMINALS = {\n");
+        for (final var kind : TokenKind.allTokenKindsInOrdinalOrder()) {
+            out.append("        ").append(quote(kind.getIdentifier())).append(",\n");
+        }
+        out.append("    };\n\n");
+    }
+
+    private void generateRun(StringBuilder out) {
+        out.append("    @Override\n");
+        out.append("    public void run() {\n");
+        out.append("        var stack = new int[64];\n");
+        out.append("        var top = 0;\n");
+        out.append("        var state = ").append(table.initState()).append(";\n");
+        out.append("        stack[top] = state;\n");
+        out.append("        var token = nextToken();\n");
+        out.append("        while (true) {\n");
+        out.append("            // 移入时为 -1, 规约时为产生式行号\n");
+        out.append("            int production;\n");
+        out.append("            switch (state) {\n");
+        for (int state = 0; state < table.stateCount(); state++) {
+            generateState(out, state);
+        }
+        out.append("                default -> throw new RuntimeException(\"Unknown status \" + state);\n");
+        out.append("            }\n\n");
+        out.append("            if (++top == stack.length) {\n");
+        out.append("                stack = grow(stack);\n");
+        out.append("            }\n");
+        out.append("            stack[top] = state;\n");
+        out.append("            if (production < 0) {\n");
+        out.append("                shifted(state);\n");
+        out.append("                token = nextToken();\n");
+        out.append("            } else {\n");
+        out.append("                reduced(state, production);\n");
+        out.append("            }\n");
+        out.append("        }\n");
+        out.append("    }\n");
+    }
+
+    private void generateState(StringBuilder out, int state) {
+        // 按动作分组, 相同动作的终结符合并为一个分支
+        final var groups = new LinkedHashMap<Integer, List<Integer>>();
+        for (int terminal = 0; terminal < table.terminalCount(); terminal++) {
+            final var packed = table.action(state, terminal);
+            if (CompiledLRTable.kindOf(packed) != CompiledLRTable.ERROR) {
+                groups.computeIfAbsent(packed, key -> new ArrayList<>()).add(terminal);
+            }
+        }
+
+        out.append("                case ").append(state).append(" -> {\n");
+        out.append("                    switch (token) {\n");
+        for (final var entry : groups.entrySet()) {
+            final var terminals = entry.getValue();
+            out.append("                        case ")
+                .append(terminals.stream().map(Object::toString).collect(Collectors.joining(", ")))
+                .append(" -> { // ")
+                .append(terminals.stream().map(terminal -> TokenKind.fromOrdinal(terminal).getIdentifier())
+                    .collect(Collectors.joining(" ")))
+                .append("\n");
+            generateAction(out, entry.getKey(), "                            ");
+            out.append("                        }\n");
+        }
+        out.append("                        default -> throw error(token, state);\n");
+        out.append("                    }\n");
+        out.append("                }\n");
+    }
+
+    private void generateAction(StringBuilder out, int packed, String indent) {
+        final var target = CompiledLRTable.targetOf(packed);
+        switch (CompiledLRTable.kindOf(packed)) {
+            case CompiledLRTable.SHIFT -> {
+                out.append(indent).append("state = ").append(target).append(";\n");
+                out.append(indent).append("production = -1;\n");
+            }
+            case CompiledLRTable.REDUCE -> {
+                final var length = table.productionLength(target);
+                final var head = table.productionHead(target);
+                out.append(indent).append("// ").append(table.getProduction(target)).append("\n");
+                if (length > 0) {
+                    out.append(indent).append("top -= ").append(length).append(";\n");
+                }
+                if (isSingleTarget(head)) {
+                    out.append(indent).append("state = ").append(gotoTargets(head).keySet().iterator().next()).append(";\n");
+                } else {
+                    out.append(indent).append("state = goto").append(head).append("(stack[top]);\n");
+                }
+                out.append(indent).append("production = ").append(target).append(";\n");
+            }
+            case CompiledLRTable.ACCEPT -> {
+                out.append(indent).append("accepted(state);\n");
+                out.append(indent).append("return;\n");
+            }
+            default -> throw new RuntimeException("Unexpected action " + packed);
+        }
+    }
+
+    private void generateGoto(StringBuilder out, int nonTerminal) {
+        final var targets = gotoTargets(nonTerminal);
+        // 以出现次数最多的目标作为 default 分支
+        final var defaultTarget = targets.entrySet().stream()
+            .max(Comparator.comparingInt(entry -> entry.getValue().size()))
+            .map(Map.Entry::getKey)
+            .orElse(-1);
+
+        out.append("\n    // GOTO ").append(nonTerminals.get(nonTerminal)).append("\n");
+        out.append("    private static int goto").append(nonTerminal).append("(int state) {\n");
+        out.append("        return switch (state) {\n");
+        for (final var entry : targets.entrySet()) {
+            if (!entry.getKey().equals(defaultTarget)) {
+                out.append("            case ")
+                    .append(entry.getValue().stream().map(Object::toString).collect(Collectors.joining(", ")))
+                    .append(" -> ").append(entry.getKey()).append(";\n");
+            }
+        }
+        out.append("            default -> ").append(defaultTarget).append(";\n");
+        out.append("        };\n");
+        out.append("    }\n");
+    }
+
+    /**
+     * @param nonTerminal 非终结符列号
+     * @return 该列中的各目标状态, 以及转移到它的各状态
+     */
+    private LinkedHashMap<Integer, List<Integer>> gotoTargets(int nonTerminal) {
+        final var targets = new LinkedHashMap<Integer, List<Integer>>();
+        for (int state = 0; state < table.stateCount(); state++) {
+            final var target = table.gotoState(state, nonTerminal);
+            if (target >= 0) {
+                targets.computeIfAbsent(target, key -> new ArrayList<>()).add(state);
+            }
+        }
+        return targets;
+    }
+
+    private boolean isSingleTarget(int nonTerminal) {
+        return gotoTargets(nonTerminal).size() == 1;
+    }
+
+    private boolean isReduced(int nonTerminal) {
+        for (int production = 0; production < table.productionCount(); production++) {
+            if (table.getProduction(production) != null && table.productionHead(production) == nonTerminal) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String quote(String text) {
+        return '"' + text.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+    }
+}
@@ -0,0 +1,51 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 构造分析表的基准测试所用的合成文法
+ * <br>
+ * 文法只使用码点文件中已有的终结符, 需要先加载码点文件. 产生式的编号即其在列表中的下标.
+ */
+final class SyntheticGrammars {
+    private SyntheticGrammars() {
+    }
+
+    /**
+     * 生成深度为 depth 的链式文法, 共 2 * depth + 2 条产生式:
+     * <pre>{@code
+     * P -> A_0
+     * A_i -> A_{i+1} * id      (0 <= i < depth)
+     * A_i -> ( A_{i+1} )       (0 <= i < depth)
+     * A_depth -> id
+     * }</pre>
+     * A_i 的左角非终结符是 A_i 到 A_depth, 因此起始状态与读入 ( 之后的状态的闭包都要展开链上其后的全部非终结符,
+     * 闭包的计算量随 depth 迅速增长. 该文法是 SLR(1) 的.
+     *
+     * @param depth 链的深度
+     * @return 按编号排列的产生式
+     */
+    static List<Production> chain(int depth) {
+        final var star = TokenKind.fromString("*");
+        final var id = TokenKind.fromString("id");
+        final var left = TokenKind.fromString("(");
+        final var right = TokenKind.fromString(")");
+
+        final var links = new NonTerminal[depth + 1];
+        for (int i = 0; i <= depth; i++) {
+            links[i] = new NonTerminal("A_" + i);
+        }
+
+        final var productions = new ArrayList<Production>(2 * depth + 2);
+        productions.add(new Production(0, new NonTerminal("P"), List.of(links[0])));
+        for (int i = 0; i < depth; i++) {
+            productions.add(new Production(productions.size(), links[i], List.of(links[i + 1], star, id)));
+            productions.add(new Production(productions.size(), links[i], List.of(left, links[i + 1], right)));
+        }
+        productions.add(new Production(productions.size(), links[depth], List.of(id)));
+        return productions;
+    }
+}
@@ -4,34 +4,119 @@ import cn.edu.hitsz.compiler.lexer.TokenKind;
 import cn.edu.hitsz.compiler.utils.FileUtils;
 
 import java.util.*;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
 /**
  * 根据语法文件构造 LR 分析表.
  * <br>
  * 此文件为非必需的框架文件, 用于提升整个编译器处理流程的统一性以及为学生提供 SLR(1) 分析表生成程序的参考. 正常情况下你不需要了解该文件.
+ * <br>
+ * 除 SLR(1) 外, 还可以构造 LALR(1) 分析表: 在同一个 LR(0) 自动机上用 DeRemer-Pennello 方法计算每个规约项目的向前看符号,
+ * 不需要构造再合并 LR(1) 项目集族, 得到的表与 SLR(1) 表大小相同, 但可以处理所有 LALR(1) 文法.
+ *
+ * @see Mode 构造方式
  */
 public class TableGenerator {
+    /**
+     * 分析表的构造方式
+     */
+    public enum Mode {
+        /**
+         * 以产生式头的 FOLLOW 集作为规约的向前看符号
+         */
+        SLR,
+        /**
+         * 以 DeRemer-Pennello 方法在 LR(0) 自动机上计算出的 LALR(1) 向前看符号作为规约的向前看符号
+         */
+        LALR
+    }
+
     public TableGenerator() {
-        this.productions = GrammarInfo.getProductionsInOrder();
+        this(Mode.SLR);
+    }
+
+    /**
+     * @param mode 分析表的构造方式
+     */
+    public TableGenerator(Mode mode) {
+        this(mode, GrammarInfo.getProductionsInOrder(), new HashSet<>(GrammarInfo.getNonTerminals().values()));
+    }
+
+    /**
+     * 不读取语法文件, 直接以给定的文法构造分析表, 用于在合成的大文法上测量构造分析表的耗时
+     *
+     * @param mode        分析表的构造方式
+     * @param productions 文法的全部产生式, 下标与产生式编号相同, 第一条形如 S -> S'
+     * @see TableGeneratorBenchmark
+     */
+    TableGenerator(Mode mode, List<Production> productions) {
+        this(mode, productions, nonTerminalsOf(productions));
+    }
+
+    private TableGenerator(Mode mode, List<Production> grammar, Set<NonTerminal> nonTerminals) {
+        this.mode = mode;
+        this.grammar = grammar;
+        this.productions = grammar;
         this.terminals = new HashSet<>(TokenKind.allAllowedTokenKinds().values());
-        this.nonTerminals = new HashSet<>(GrammarInfo.getNonTerminals().values());
+        this.nonTerminals = nonTerminals;
 
         if (productions.get(0).body().size() != 1) {
             throw new RuntimeException("The first production in grammar file must like S -> S'");
         }
     }
 
+    /**
+     * 设置是否并行构造 LR(0) 规范项目集族. 默认为否.
+     * <br>
+     * 并行时按层 BFS, 每一层的状态在 {@link ForkJoinPool#commonPool()} 上同时展开, 新状态以核为键在并发哈希表中去重,
+     * 全部展开后再按顺序构造时的发现顺序重新编号, 因此得到的分析表与顺序构造完全相同.
+     *
+     * @param parallel 是否并行
+     */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    /**
+     * 设置是否将右递归的列表改写为左递归后再构造分析表. 默认为否.
+     * <br>
+     * 改写后分析 S_list 这样的列表时状态栈的深度不再随列表长度增长. 驱动程序加载这样的表时会把列表的规约还原为原文法的规约序列,
+     * 观察者与 ProductionCollector 看到的结果与未改写时相同. 可改写的列表见 {@link ListRewrite}.
+     *
+     * @param rewriteRightRecursion 是否改写
+     */
+    public void setRewriteRightRecursion(boolean rewriteRightRecursion) {
+        this.rewriteRightRecursion = rewriteRightRecursion;
+    }
+
     /**
      * 主体方法
      */
     public void run() {
-        calcFirst();
-        calcFollow();
-        constructDFA();
+        build();
         dumpItems();
-        genTable();
+    }
+
+    /**
+     * 构造分析表, 与 {@link #run()} 相同, 但不输出项目集族
+     */
+    void build() {
+        listRewrite = null;
+        productions = grammar;
+        if (rewriteRightRecursion) {
+            final var rewrite = ListRewrite.of(productions);
+            if (!rewrite.isEmpty()) {
+                listRewrite = rewrite;
+                productions = rewrite.getProductions();
+            }
+        }
+
+        analysis = GrammarAnalysis.analyze(productions);
+        constructDFA();
+        genTable(mode == Mode.LALR ? calcLookaheads() : null);
     }
 
     /**
@@ -41,8 +126,8 @@ public class TableGenerator {
         final var lines = new ArrayList<String>();
         for (final var status : allStatusInIndexOrder) {
             lines.add("%d: ".formatted(status.index()));
-            for (final var item : including.get(status)) {
-                lines.add("    " + item);
+            for (final var item : closures.get(status.index())) {
+                lines.add("    " + decode(item));
             }
         }
 
@@ -53,132 +138,40 @@ public class TableGenerator {
      * @return 构造出的 LR 表
      */
     public LRTable getTable() {
-        return new LRTable(allStatusInIndexOrder, new ArrayList<>(terminals), new ArrayList<>(nonTerminals));
+        return new LRTable(allStatusInIndexOrder, new ArrayList<>(terminals), new ArrayList<>(nonTerminals), listRewrite);
     }
 
-    private final List<Production> productions;
+    private final Mode mode;
+    private boolean parallel = false;
+    private boolean rewriteRightRecursion = false;
+    // 原文法的产生式, 以及构造分析表时实际使用的 (可能改写过的) 产生式
+    private final List<Production> grammar;
+    private List<Production> productions;
+    private ListRewrite listRewrite;
     private final Set<TokenKind> terminals;
     private final Set<NonTerminal> nonTerminals;
 
-    private final Map<Term, Set<TokenKind>> first = new HashMap<>();
-    private final Map<Term, Set<TokenKind>> follow = new HashMap<>();
-
-    private final Set<Term> visited = new HashSet<>();
+    // 文法的 nullable, FIRST 与 FOLLOW 集合
+    private GrammarAnalysis analysis;
 
     /**
-     * 计算所有符号的 first 集合 <br>
-     * 终结符的 first 就是它自身, 非终结符的 first 则递归计算
+     * @return 产生式中出现的所有非终结符
      */
-    private void calcFirst() {
-        for (final var terminal : terminals) {
-            first.put(terminal, Set.of(terminal));
-        }
-
-        for (final var nonTerminal : nonTerminals) {
-            visited.clear();
-            calcFirst(nonTerminal);
-        }
-
-    }
-
-    /**
-     * 递归计算特定非终结符的 first
-     *
-     * @param nonTerminal 非终结符
-     * @return 其 first 集合
-     */
-    private Set<TokenKind> calcFirst(Term nonTerminal) {
-        // 如果已经被计算, 则直接返回缓存的结果
-        if (first.containsKey(nonTerminal)) {
-            return first.get(nonTerminal);
-        }
-
-        final var result = new LinkedHashSet<TokenKind>();
+    static Set<NonTerminal> nonTerminalsOf(List<Production> productions) {
+        final var result = new HashSet<NonTerminal>();
         for (final var production : productions) {
-            if (nonTerminal == production.head()) {
-                // 在文法中寻找以该非终结符为头的产生式
-                final var firstSymbol = production.body().get(0);
-                // 记录已经在栈中的递归过的非终结符, 防止直接或间接的左递归导致程序死循环
-                if (!visited.contains(firstSymbol)) {
-                    // 随后递归查找该产生式体的第一个文法符号的 first 集合
-                    // 它的 first 集合也是该非终结符的 first 集合
-                    visited.add(firstSymbol);
-                    result.addAll(calcFirst(firstSymbol));
+            result.add(production.head());
+            for (final var term : production.body()) {
+                if (term instanceof NonTerminal nonTerminal) {
+                    result.add(nonTerminal);
                 }
             }
         }
-
-        first.put(nonTerminal, result);
         return result;
     }
 
-
     /**
-     * 计算所有非终结符的 follow 集合
-     */
-    private void calcFollow() {
-        for (final var nonTerminal : nonTerminals) {
-            visited.clear();
-            calcFollow(nonTerminal);
-        }
-
-        // 对于找完所有产生式了都还没没有 follow 的非终结符
-        // 它必然是一个没有被使用的非终结符, 这意味着它的 follow 就是 EOF
-        nonTerminals.stream()
-            .map(follow::get).filter(Set::isEmpty)
-            .forEach(set -> set.add(TokenKind.eof()));
-    }
-
-    /**
-     * 递归计算给定非终结符的 follow 集合
-     *
-     * @param nonTerminal 给定的非终止符
-     * @return 其 follow 集合
-     */
-    private Set<TokenKind> calcFollow(NonTerminal nonTerminal) {
-        // 与 first 类似, 先查找缓存
-        if (follow.containsKey(nonTerminal)) {
-            return follow.get(nonTerminal);
-        }
-
-        final var result = new LinkedHashSet<TokenKind>();
-        for (final var production : productions) {
-            final var body = production.body();
-
-            // 对该非终结符在每条产生式体中的可能出现, 我们都要将紧跟在该出现后面的项的 first 加入其 follow 集合
-            // 我们直接枚举每条产生式体的每个项
-            for (int i = 0; i < body.size() - 1; i++) {
-                // 如果发现目前的 curr 的话, 后面跟着的符号的 first 就是它的 follow
-                final var symbol = body.get(i);
-                final var next = body.get(i + 1);
-
-                if (symbol.equals(nonTerminal)) {
-                    result.addAll(first.get(next));
-                }
-            }
-
-            // 如果该非终结符出现在产生式的末尾, 那么该产生式的头的 follow 集合也要加入其 follow 集合中
-            final var lastInBody = body.get(body.size() - 1);
-            if (lastInBody.equals(nonTerminal)) {
-                final var head = production.head();
-                if (visited.contains(head)) {
-                    // 如果该产生式头已经在栈中了, 那么意味着这个非终结符有可能一直展开自己
-                    // 这时候 EOF 也可能是它的 Follow
-                    result.add(TokenKind.eof());
-                } else {
-                    // 否则直接递归查找
-                    visited.add(head);
-                    result.addAll(calcFollow(head));
-                }
-            }
-        }
-
-        follow.put(nonTerminal, result);
-        return result;
-    }
-
-    /**
-     * 表示一个项目
+     * 表示一个项目, 仅用于输出
      * <br>
      * 对于 A -> B . C, 其 production 为 A -> B C, dot 为 1 (其下一个项 C 的索引) <br>
      * 对于 A -> B C ., 其 production 为 A -> B C, dot 为 2 (其产生式体的项数量) <br>
@@ -187,35 +180,6 @@ public class TableGenerator {
      * @param dot        目前解析到的位置
      */
     private record Item(Production production, int dot) {
-        /**
-         * @return 点的位置是否在产生式的末尾
-         */
-        public boolean isDotAtEnd() {
-            return production.body().size() == dot;
-        }
-
-        /**
-         * @return 获得点后面的文法符号; 若点的位置在末尾则返回空
-         */
-        public Optional<Term> getAfterDot() {
-            if (isDotAtEnd()) {
-                return Optional.empty();
-            } else {
-                return Optional.of(production.body().get(dot));
-            }
-        }
-
-        /**
-         * @return 获得当前项目的后继项; 若点的位置在末尾则返回空
-         */
-        public Optional<Item> getNextItem() {
-            if (isDotAtEnd()) {
-                return Optional.empty();
-            } else {
-                return Optional.of(new Item(production, dot + 1));
-            }
-        }
-
         @Override
         public String toString() {
             final var builder = new StringBuilder();
@@ -239,154 +203,381 @@ public class TableGenerator {
         }
     }
 
-    private final Map<Set<Item>, Status> belongTo = new HashMap<>();
-    private final Map<Status, Set<Item>> including = new HashMap<>();
+    /**
+     * 项目集的核, 以升序排列的项目编码表示, 用作状态的键
+     */
+    private record Kernel(int[] items) {
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Kernel kernel && Arrays.equals(items, kernel.items);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(items);
+        }
+    }
+
+    // 构造项目集族时, 项目与文法符号都以 int 编码:
+    // 文法符号按先非终结符后终结符的顺序编号, 第 p 条产生式点在位置 dot 的项目编码为 itemBase[p] + dot
+    private final List<Term> symbols = new ArrayList<>();
+    private final Map<Term, Integer> symbolIds = new HashMap<>();
+    private int[] itemBase;
+    private int[] itemProduction;
+    private int[] itemDot;
+    // 每个项目点后面的文法符号, 点在末尾时为 -1
+    private int[] itemSymbol;
+    // 每个非终结符的各产生式点在开头的项目
+    private int[][] startItems;
+    // 每个非终结符的闭包中会加入的非终结符 (即它的所有左角非终结符, 包括自身), 用到时才计算
+    private BitSet[] closureMemo;
+
     private final List<Status> allStatusInIndexOrder = new ArrayList<>();
+    // 每个状态的项目集 (核在前, 之后为闭包加入的项目)
+    private final List<int[]> closures = new ArrayList<>();
+    // 每个状态在构造项目集族时记录下的转移, 以 (文法符号, 目标状态) 对依次排列, 文法符号升序
+    private final List<int[]> edges = new ArrayList<>();
+
+    // LR(0) 自动机的转移, 即 GO(I, X) 的结果
+    private final Map<Status, Map<Term, Status>> transitions = new HashMap<>();
 
     /**
      * 构造出所有状态并维护状态与项集之间的对应关系
      */
     private void constructDFA() {
-        final var argumentProduction = productions.get(0);
-        final var initItem = new Item(argumentProduction, 0);
-        final var collections = constructCanonicalLRCollection(initItem);
+        encodeItems();
+        if (parallel) {
+            constructCanonicalLRCollectionInParallel();
+        } else {
+            constructCanonicalLRCollection();
+        }
+
+        for (int idx = 0; idx < closures.size(); idx++) {
+            allStatusInIndexOrder.add(Status.create(idx));
+        }
+
+        for (final var status : allStatusInIndexOrder) {
+            final var edge = edges.get(status.index());
+            final var targets = new LinkedHashMap<Term, Status>();
+            for (int i = 0; i < edge.length; i += 2) {
+                targets.put(symbols.get(edge[i]), allStatusInIndexOrder.get(edge[i + 1]));
+            }
+            transitions.put(status, targets);
+        }
+    }
+
+    /**
+     * 为文法符号与项目编号, 并按产生式头建立索引
+     */
+    private void encodeItems() {
+        symbols.addAll(nonTerminals);
+        symbols.addAll(terminals);
+        for (int id = 0; id < symbols.size(); id++) {
+            symbolIds.put(symbols.get(id), id);
+        }
 
-        for (int idx = 0; idx < collections.size(); idx++) {
-            final var status = Status.create(idx);
-            allStatusInIndexOrder.add(status);
+        itemBase = new int[productions.size()];
+        var itemCount = 0;
+        for (int p = 0; p < productions.size(); p++) {
+            itemBase[p] = itemCount;
+            itemCount += productions.get(p).body().size() + 1;
+        }
 
-            final var items = collections.get(idx);
-            including.put(status, items);
-            belongTo.put(items, status);
+        itemProduction = new int[itemCount];
+        itemDot = new int[itemCount];
+        itemSymbol = new int[itemCount];
+        final var byHead = new ArrayList<List<Integer>>();
+        for (int i = 0; i < nonTerminals.size(); i++) {
+            byHead.add(new ArrayList<>());
         }
+        for (int p = 0; p < productions.size(); p++) {
+            final var body = productions.get(p).body();
+            for (int dot = 0; dot <= body.size(); dot++) {
+                final var item = itemBase[p] + dot;
+                itemProduction[item] = p;
+                itemDot[item] = dot;
+                itemSymbol[item] = dot == body.size() ? -1 : symbolIds.get(body.get(dot));
+            }
+            byHead.get(symbolIds.get(productions.get(p).head())).add(itemBase[p]);
+        }
+
+        startItems = new int[byHead.size()][];
+        for (int head = 0; head < byHead.size(); head++) {
+            startItems[head] = byHead.get(head).stream().mapToInt(Integer::intValue).toArray();
+        }
+        closureMemo = new BitSet[nonTerminals.size()];
     }
 
     /**
-     * @param head 头部符号
-     * @return 返回一个流, 其中的元素都是以 head 为头的产生式
+     * @param symbol 文法符号编号
+     * @return 是否为非终结符
      */
-    private Stream<Production> getProductionsByHead(Term head) {
-        return productions.stream().filter(production -> production.head().equals(head));
+    private boolean isNonTerminal(int symbol) {
+        return symbol < nonTerminals.size();
     }
 
     /**
-     * 构造项集 {@code sourceItem} 的闭包, 相当于理论课中的 CLOSURE(I) 函数
+     * @param nonTerminal 非终结符编号
+     * @return 展开该非终结符时闭包中会加入其产生式的所有非终结符
+     */
+    private BitSet closureOf(int nonTerminal) {
+        if (closureMemo[nonTerminal] == null) {
+            final var result = new BitSet();
+            final var unexpanded = new ArrayDeque<Integer>();
+            result.set(nonTerminal);
+            unexpanded.add(nonTerminal);
+            while (!unexpanded.isEmpty()) {
+                for (final var item : startItems[unexpanded.pollFirst()]) {
+                    final var symbol = itemSymbol[item];
+                    if (symbol >= 0 && isNonTerminal(symbol) && !result.get(symbol)) {
+                        result.set(symbol);
+                        unexpanded.addLast(symbol);
+                    }
+                }
+            }
+            closureMemo[nonTerminal] = result;
+        }
+        return closureMemo[nonTerminal];
+    }
+
+    /**
+     * 构造核的闭包, 相当于理论课中的 CLOSURE(I) 函数
+     * <br>
+     * 闭包中新加入的项目都是点在开头的项目, 只取决于加入了哪些非终结符, 因此只需合并各核项目点后面的非终结符的闭包.
      *
-     * @param sourceItem 项集 I
-     * @return 闭包
+     * @param kernel 核
+     * @return 闭包, 核在前
      */
-    private Set<Item> constructClosure(Set<Item> sourceItem) {
-        // 采用 BFS 的方法来避免每次都检测集合的更改
-        final var result = new LinkedHashSet<>(sourceItem);
-        // 已经找到, 但是还未完全探索其能展开的项的项
-        // 类似于 BFS 的队列或者是 mark-and-sweep GC 算法里的灰色列表
-        final var unexpanded = new ArrayDeque<>(sourceItem);
-
-        while (!unexpanded.isEmpty()) {
-            final var top = unexpanded.pollFirst();
-            // 获得当前项中点后面的符号
-            top.getAfterDot().ifPresent(afterDot ->
-                // 随后查找以该符号作为头部的产生式
-                getProductionsByHead(afterDot)
-                    // 构造点在对应产生式开头的新项
-                    .map(production -> new Item(production, 0))
-                    // 对于不在 result 中的新项
-                    .filter(item -> !result.contains(item))
-                    // 加入队列并加入结果中
-                    .peek(unexpanded::add)
-                    .forEach(result::add));
+    private int[] constructClosure(int[] kernel) {
+        final var added = new BitSet();
+        for (final var item : kernel) {
+            final var symbol = itemSymbol[item];
+            if (symbol >= 0 && isNonTerminal(symbol) && !added.get(symbol)) {
+                added.or(closureOf(symbol));
+            }
         }
 
+        var size = kernel.length;
+        for (var nt = added.nextSetBit(0); nt >= 0; nt = added.nextSetBit(nt + 1)) {
+            size += startItems[nt].length;
+        }
+        final var result = Arrays.copyOf(kernel, size);
+        var length = kernel.length;
+        for (var nt = added.nextSetBit(0); nt >= 0; nt = added.nextSetBit(nt + 1)) {
+            System.arraycopy(startItems[nt], 0, result, length, startItems[nt].length);
+            length += startItems[nt].length;
+        }
         return result;
     }
 
     /**
-     * 相当于理论课中的 GO(I, X) 函数 (转移函数)
-     *
-     * @param items 当前项集 I
-     * @param term  文法符号 X
-     * @return I 关于 X 的后继项目集
+     * 将一个项目集中的项目按点后面的文法符号分组, 得到所有后继项目集的核 (相当于对每个文法符号求 GO(I, X) 的核)
+     * <br>
+     * 分组用的数组在多次调用之间复用, 因此并行构造时每个线程各持有一个.
      */
-    private Set<Item> constructGoto(Set<Item> items, Term term) {
-        final var kernelForGoto = items.stream()
-            // 先筛选出 I 中所有点后面是 term 的项
-            .filter(item -> item.getAfterDot().map(term::equals).orElse(false))
-            // 然后分别求出每一个项的后继项
-            // 这个项集就是后继项目集的核
-            .map(Item::getNextItem).flatMap(Optional::stream)
-            .collect(Collectors.toSet());
-
-        // 随后从后继项目集的核中构造闭包即可得到后继项目集
-        return constructClosure(kernelForGoto);
+    private final class Successors {
+        private final int[][] items = new int[symbols.size()][];
+        private final int[] counts = new int[symbols.size()];
+        private final int[] touched = new int[symbols.size()];
+        private int touchedCount = 0;
+
+        /**
+         * 扫描一个项目集
+         *
+         * @param closure 项目集
+         * @return 有后继的文法符号个数
+         */
+        int collect(int[] closure) {
+            touchedCount = 0;
+            for (final var item : closure) {
+                final var symbol = itemSymbol[item];
+                if (symbol < 0) {
+                    continue;
+                }
+                if (counts[symbol] == 0) {
+                    touched[touchedCount++] = symbol;
+                    if (items[symbol] == null) {
+                        items[symbol] = new int[4];
+                    }
+                }
+                if (counts[symbol] == items[symbol].length) {
+                    items[symbol] = Arrays.copyOf(items[symbol], items[symbol].length * 2);
+                }
+                items[symbol][counts[symbol]++] = item + 1;
+            }
+            Arrays.sort(touched, 0, touchedCount);
+            return touchedCount;
+        }
+
+        /**
+         * @param i 序号, 小于 {@link #collect} 的返回值
+         * @return 第 i 个有后继的文法符号, 按编号升序
+         */
+        int symbol(int i) {
+            return touched[i];
+        }
+
+        /**
+         * @param i 序号, 小于 {@link #collect} 的返回值
+         * @return 第 i 个有后继的文法符号对应的后继核, 已按升序排列
+         */
+        int[] kernel(int i) {
+            final var symbol = touched[i];
+            final var kernel = Arrays.copyOf(items[symbol], counts[symbol]);
+            counts[symbol] = 0;
+            Arrays.sort(kernel);
+            return kernel;
+        }
     }
 
     /**
      * 构造 LR(0) 规范项目集族
-     *
-     * @param initItem 起始项目 S -> . S'
-     * @return 规范项目集族
+     * <br>
+     * 以 BFS 形式搜索, 对每个状态只扫描一遍其项目集, 按点后面的文法符号分组得到所有后继项目集的核,
+     * 再以核查找或创建目标状态并记录转移. 状态按被发现的顺序编号, 同一状态的后继按文法符号编号的顺序发现.
+     */
+    private void constructCanonicalLRCollection() {
+        final var states = new HashMap<Kernel, Integer>();
+        final var initKernel = new int[]{itemBase[0]};
+        states.put(new Kernel(initKernel), 0);
+        closures.add(constructClosure(initKernel));
+
+        final var successors = new Successors();
+        for (int state = 0; state < closures.size(); state++) {
+            final var count = successors.collect(closures.get(state));
+            final var edge = new int[count * 2];
+            for (int i = 0; i < count; i++) {
+                final var target = states.computeIfAbsent(new Kernel(successors.kernel(i)), key -> {
+                    closures.add(constructClosure(key.items()));
+                    return closures.size() - 1;
+                });
+                edge[2 * i] = successors.symbol(i);
+                edge[2 * i + 1] = target;
+            }
+            edges.add(edge);
+        }
+    }
+
+    /**
+     * 并行构造时的一个状态. 编号在全部展开之后才确定
+     */
+    private static final class ParallelState {
+        private final int[] kernel;
+        private int[] closure;
+        private int[] edgeSymbols;
+        private ParallelState[] edgeTargets;
+        private int index = -1;
+
+        ParallelState(int[] kernel) {
+            this.kernel = kernel;
+        }
+    }
+
+    /**
+     * 并行构造 LR(0) 规范项目集族
+     * <br>
+     * 按层 BFS: 每一层的所有状态并行地求闭包并分组后继, 后继核在并发哈希表中查找或创建状态, 新创建的状态组成下一层.
+     * 由于同一层内状态被发现的先后不确定, 展开结束后从起始状态按文法符号编号的顺序重新遍历一次转移, 以与顺序构造相同的规则编号.
      */
-    private List<Set<Item>> constructCanonicalLRCollection(Item initItem) {
-        // 先收集所有的文法符号备用
-        final var terms = new LinkedHashSet<Term>();
-        terms.addAll(nonTerminals);
-        terms.addAll(terminals);
-
-        // 构造初始项目集族
-        final var initClosure = constructClosure(Set.of(initItem));
-
-        // 同样以 BFS 形式搜索
-        final var result = new LinkedHashSet<>(Set.of(initClosure));
-        final var unexpanded = new ArrayDeque<>(Set.of(initClosure));
-
-        while (!unexpanded.isEmpty()) {
-            final var items = unexpanded.pollFirst();
-
-            // 对于每个未被探索的集族
-            for (final var term : terms) {
-                // 尝试对每一个文法符号都求一个后继项目集
-                final var to = constructGoto(items, term);
-                // 如果还没被加入到 result 中
-                if (!to.isEmpty() && !result.contains(to)) {
-                    // 就加入 result 和待探索列表中
-                    result.add(to);
-                    unexpanded.addLast(to);
+    private void constructCanonicalLRCollectionInParallel() {
+        final var pool = ForkJoinPool.commonPool();
+        // 求闭包时只读 closureMemo, 因此先并行地填满; 每个任务只写自己的那一项
+        pool.submit(() -> IntStream.range(0, nonTerminals.size()).parallel().forEach(this::closureOf)).join();
+
+        final var index = new ConcurrentHashMap<Kernel, ParallelState>();
+        final var init = new ParallelState(new int[]{itemBase[0]});
+        index.put(new Kernel(init.kernel), init);
+        final var successors = ThreadLocal.withInitial(Successors::new);
+
+        var frontier = List.of(init);
+        while (!frontier.isEmpty()) {
+            final var level = frontier;
+            final var next = new ConcurrentLinkedQueue<ParallelState>();
+            pool.submit(() -> level.parallelStream().forEach(state -> {
+                state.closure = constructClosure(state.kernel);
+                final var grouping = successors.get();
+                final var count = grouping.collect(state.closure);
+                state.edgeSymbols = new int[count];
+                state.edgeTargets = new ParallelState[count];
+                for (int i = 0; i < count; i++) {
+                    final var kernel = grouping.kernel(i);
+                    final var created = new ParallelState(kernel);
+                    final var existing = index.putIfAbsent(new Kernel(kernel), created);
+                    if (existing == null) {
+                        next.add(created);
+                    }
+                    state.edgeSymbols[i] = grouping.symbol(i);
+                    state.edgeTargets[i] = existing == null ? created : existing;
+                }
+            })).join();
+            frontier = new ArrayList<>(next);
+        }
+
+        // 重新编号
+        final var order = new ArrayList<ParallelState>(index.size());
+        init.index = 0;
+        order.add(init);
+        for (int i = 0; i < order.size(); i++) {
+            for (final var target : order.get(i).edgeTargets) {
+                if (target.index < 0) {
+                    target.index = order.size();
+                    order.add(target);
                 }
             }
         }
 
-        return new ArrayList<>(result);
+        for (final var state : order) {
+            closures.add(state.closure);
+            final var edge = new int[state.edgeSymbols.length * 2];
+            for (int i = 0; i < state.edgeSymbols.length; i++) {
+                edge[2 * i] = state.edgeSymbols[i];
+                edge[2 * i + 1] = state.edgeTargets[i].index;
+            }
+            edges.add(edge);
+        }
+    }
+
+    /**
+     * @param item 项目编码
+     * @return 解码后的项目
+     */
+    private Item decode(int item) {
+        return new Item(productions.get(itemProduction[item]), itemDot[item]);
     }
 
     /**
      * 构造 LR 分析表 (填充各个 status 中的 action 与 goto)
+     *
+     * @param lookaheads LALR(1) 模式下每个状态中每个规约项目的向前看符号, SLR(1) 模式下为 null
      */
-    private void genTable() {
+    private void genTable(Map<Status, Map<Production, Set<TokenKind>>> lookaheads) {
         // 依索引顺序对每个状态的每个项目
         for (final var status : allStatusInIndexOrder) {
-            for (final var item : including.get(status)) {
-                final var afterDotOpt = item.getAfterDot();
-
+            final var targets = transitions.get(status);
+            for (final var item : closures.get(status.index())) {
                 // 根据项目的点的位置和点后面跟着的文法符号进行分类
-                if (afterDotOpt.isEmpty()) {
-                    final var argumentProduction = productions.get(0);
-                    if (item.production().equals(argumentProduction)) {
+                if (itemSymbol[item] < 0) {
+                    if (itemProduction[item] == 0) {
                         // S -> S' .
                         // 如果项目代表起始文法的末尾, 那么再遇到 EOF 就 accept 了
                         status.setAction(TokenKind.eof(), Action.accept());
                     } else {
                         // A -> alpha .
                         // 如果项目代表某个产生式的末尾, 那么再遇到对于任何位于 follow(A) 内的文法符号都应该规约 A
-                        final var production = item.production();
+                        // LALR(1) 模式下则换为该状态下该项目的向前看符号集合
+                        final var production = productions.get(itemProduction[item]);
                         final var head = production.head();
-                        for (final var a : follow.get(head)) {
+                        final var reduceOn = lookaheads != null
+                            ? lookaheads.getOrDefault(status, Map.of()).getOrDefault(production, Set.of())
+                            : analysis.getFollow(head);
+                        for (final var a : reduceOn) {
                             status.setAction(a, Action.reduce(production));
                         }
                     }
 
                 } else {
-                    final var symbol = afterDotOpt.get();
-                    final var next = belongTo.get(constructGoto(including.get(status), symbol));
+                    final var symbol = symbols.get(itemSymbol[item]);
+                    final var next = targets.get(symbol);
 
                     if (symbol instanceof TokenKind tokenKind) {
                         // A -> alpha . a beta
@@ -405,6 +596,101 @@ public class TableGenerator {
         }
     }
 
+    /**
+     * 用 DeRemer-Pennello 方法计算 LALR(1) 向前看符号
+     * <br>
+     * 对 LR(0) 自动机中每个非终结符上的转移 (p, A), 定义:
+     * <ul>
+     *     <li>DR(p, A): 从 GO(p, A) 出发可以直接移入的终结符 (若 GO(p, A) 可以接受则还包括 EOF)</li>
+     *     <li>(p, A) reads (r, C): r = GO(p, A), 且 C 可以推出空串</li>
+     *     <li>(p, A) includes (p', B): 存在 B -> beta A gamma, gamma 可以推出空串, 且 p' 经 beta 转移到 p</li>
+     *     <li>(q, A -> omega) lookback (p, A): p 经 omega 转移到 q</li>
+     * </ul>
+     * 则 Read 是 DR 在 reads 上的闭包, Follow 是 Read 在 includes 上的闭包, 二者都用 digraph 算法 ({@link GrammarAnalysis#digraph})在一遍深度优先搜索中求出,
+     * 同一强连通分量中的转移取相同的集合. 最后 LA(q, A -> omega) 为所有 lookback 到的转移的 Follow 之并.
+     *
+     * @return 每个状态中每个规约项目的向前看符号
+     */
+    private Map<Status, Map<Production, Set<TokenKind>>> calcLookaheads() {
+        final var argumentProduction = productions.get(0);
+
+        // 为每个非终结符上的转移编号
+        final var transitionIndex = new HashMap<Status, Map<NonTerminal, Integer>>();
+        final var sources = new ArrayList<Status>();
+        final var transitionSymbols = new ArrayList<NonTerminal>();
+        for (final var status : allStatusInIndexOrder) {
+            for (final var term : transitions.get(status).keySet()) {
+                if (term instanceof NonTerminal nonTerminal) {
+                    transitionIndex.computeIfAbsent(status, key -> new HashMap<>()).put(nonTerminal, sources.size());
+                    sources.add(status);
+                    transitionSymbols.add(nonTerminal);
+                }
+            }
+        }
+        final var count = sources.size();
+
+        // DR 与 reads
+        final var directReads = new BitSet[count];
+        final var reads = new ArrayList<List<Integer>>(count);
+        for (int x = 0; x < count; x++) {
+            final var target = transitions.get(sources.get(x)).get(transitionSymbols.get(x));
+            final var set = new BitSet();
+            final var edges = new ArrayList<Integer>();
+            for (final var entry : transitions.get(target).entrySet()) {
+                if (entry.getKey() instanceof TokenKind tokenKind) {
+                    set.set(tokenKind.getOrdinal());
+                } else if (analysis.isNullable(entry.getKey())) {
+                    edges.add(transitionIndex.get(target).get((NonTerminal) entry.getKey()));
+                }
+            }
+            // 核按升序排列, 而 S -> S' . 是除起始项目外编码最小的项目, 若存在则必然排在最前面
+            if (closures.get(target.index())[0] == itemBase[0] + argumentProduction.body().size()) {
+                set.set(TokenKind.eof().getOrdinal());
+            }
+            directReads[x] = set;
+            reads.add(edges);
+        }
+        final var read = GrammarAnalysis.digraph(reads, directReads);
+
+        // includes 与 lookback: 从每个转移 (p', B) 出发, 沿 B 的每条产生式体走一遍. B 的产生式即以 B 为左部的起始项目
+        final var includes = new ArrayList<List<Integer>>(count);
+        for (int x = 0; x < count; x++) {
+            includes.add(new ArrayList<>());
+        }
+        final var lookback = new HashMap<Status, Map<Production, List<Integer>>>();
+        for (int x = 0; x < count; x++) {
+            final var from = sources.get(x);
+            for (final var startItem : startItems[symbolIds.get(transitionSymbols.get(x))]) {
+                final var production = productions.get(itemProduction[startItem]);
+                final var body = production.body();
+                var state = from;
+                for (int i = 0; i < body.size(); i++) {
+                    final var symbol = body.get(i);
+                    if (symbol instanceof NonTerminal nonTerminal && analysis.isNullable(body.subList(i + 1, body.size()))) {
+                        includes.get(transitionIndex.get(state).get(nonTerminal)).add(x);
+                    }
+                    state = transitions.get(state).get(symbol);
+                }
+                lookback.computeIfAbsent(state, key -> new HashMap<>())
+                    .computeIfAbsent(production, key -> new ArrayList<>())
+                    .add(x);
+            }
+        }
+        final var followSets = GrammarAnalysis.digraph(includes, read);
+
+        final var lookaheads = new HashMap<Status, Map<Production, Set<TokenKind>>>();
+        for (final var stateEntry : lookback.entrySet()) {
+            final var byProduction = new HashMap<Production, Set<TokenKind>>();
+            for (final var entry : stateEntry.getValue().entrySet()) {
+                final var union = new BitSet();
+                entry.getValue().forEach(x -> union.or(followSets[x]));
+                byProduction.put(entry.getKey(), GrammarAnalysis.toTokenKinds(union));
+            }
+            lookaheads.put(stateEntry.getKey(), byProduction);
+        }
+        return lookaheads;
+    }
+
     // 我们在 Status.setAction/setGoto 中检查规约-规约冲突与移入-规约冲突
     // 如果有冲突, 它们会抛出 RuntimeException
 }
@@ -0,0 +1,112 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import java.util.Arrays;
+
+/**
+ * 编译后的分析表上的单产生式 (形如 A -> B 的产生式) 规约捷径
+ * <br>
+ * 表达式中的每个运算数都要依次规约 B -> id, A -> B, E -> A, 后两步只是弹出一个状态, 再以同一个暴露出的状态查一次 goto 表.
+ * 设规约后暴露出的状态为 s, 规约出的非终结符为 X, 向前看符号为 a, 则 goto(s, X) 之后连续发生的单产生式规约只由 (s, X, a) 决定:
+ * 若 goto(s, X) 在 a 上的动作是规约单产生式 A -> X, 下一个状态就是 goto(s, A), 以此类推, 直到动作不再是单产生式的规约为止.
+ * 该类预先对所有 (s, X, a) 求出这样的链, 驱动程序查一次即可直接转移到链末的状态.
+ * <br>
+ * 链只沿着表中真实存在的规约动作展开, 因此接受的输入, 报错的位置与报错时的状态都与逐步规约时相同. 链中的每一步都保留了产生式与规约后的状态,
+ * 驱动程序可以为关心这些产生式的观察者补发通知.
+ * <br>
+ * 改写过的列表的产生式 (见 {@link ListRewrite}) 与结束列表的产生式不会进入链, 它们的规约需要由驱动程序还原.
+ */
+public final class UnitReductionBypass {
+    private final int nonTerminalCount;
+
+    // 以 [s * 非终结符数 + X][a] 为下标的链, 依次为 (产生式编号, 规约后的状态) 对; 没有链时为 null
+    private final int[][][] chains;
+
+    /**
+     * 对编译后的分析表求出所有单产生式规约链
+     *
+     * @param table 编译后的分析表
+     * @return 规约链
+     */
+    public static UnitReductionBypass of(CompiledLRTable table) {
+        return new UnitReductionBypass(table);
+    }
+
+    /**
+     * @param state       规约后暴露出的状态
+     * @param nonTerminal 规约出的非终结符列号
+     * @param terminal    向前看符号的序号
+     * @return 紧接着的单产生式规约链, 依次为 (产生式编号, 规约后的状态) 对, 最后一个状态即应转移到的状态; 没有时为 null
+     */
+    public int[] chain(int state, int nonTerminal, int terminal) {
+        final var row = chains[state * nonTerminalCount + nonTerminal];
+        return row == null ? null : row[terminal];
+    }
+
+    private UnitReductionBypass(CompiledLRTable table) {
+        this.nonTerminalCount = table.nonTerminalCount();
+        final var stateCount = table.stateCount();
+        final var terminalCount = table.terminalCount();
+        final var unit = unitProductions(table);
+
+        chains = new int[stateCount * nonTerminalCount][][];
+        final var buffer = new int[2 * (nonTerminalCount + 1)];
+        for (int state = 0; state < stateCount; state++) {
+            for (int nonTerminal = 0; nonTerminal < nonTerminalCount; nonTerminal++) {
+                final var target = table.gotoState(state, nonTerminal);
+                if (target < 0) {
+                    continue;
+                }
+
+                int[][] row = null;
+                for (int terminal = 0; terminal < terminalCount; terminal++) {
+                    var length = 0;
+                    var current = target;
+                    // 每一步都规约出不同的非终结符, 否则文法有二义性; 以非终结符数为上限防止成环
+                    while (length < buffer.length) {
+                        final var packed = table.action(current, terminal);
+                        if (CompiledLRTable.kindOf(packed) != CompiledLRTable.REDUCE
+                            || !unit[CompiledLRTable.targetOf(packed)]) {
+                            break;
+                        }
+                        final var production = CompiledLRTable.targetOf(packed);
+                        final var next = table.gotoState(state, table.productionHead(production));
+                        if (next < 0) {
+                            break;
+                        }
+                        buffer[length++] = production;
+                        buffer[length++] = next;
+                        current = next;
+                    }
+
+                    if (length > 0) {
+                        if (row == null) {
+                            row = new int[terminalCount][];
+                        }
+                        row[terminal] = Arrays.copyOf(buffer, length);
+                    }
+                }
+                chains[state * nonTerminalCount + nonTerminal] = row;
+            }
+        }
+    }
+
+    /**
+     * @return 以产生式编号为下标, 是否为可以进入链的单产生式
+     */
+    private static boolean[] unitProductions(CompiledLRTable table) {
+        final var rewrite = table.getListRewrite();
+        final var unit = new boolean[table.productionCount()];
+        for (int index = 0; index < unit.length; index++) {
+            final var production = table.getProduction(index);
+            if (production == null || production.body().size() != 1
+                || !(production.body().get(0) instanceof NonTerminal)) {
+                continue;
+            }
+            if (rewrite != null && (rewrite.listOf(index) >= 0 || rewrite.closedBy(index) >= 0)) {
+                continue;
+            }
+            unit[index] = true;
+        }
+        return unit;
+    }
+}
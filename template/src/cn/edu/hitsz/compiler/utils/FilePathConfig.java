@@ -25,6 +25,16 @@ public final class FilePathConfig {
      */
     public final static String LR1_TABLE_PATH = "data/in/LR1_table.csv";
 
+    /**
+     * 预先编译为二进制格式的 LR 分析表
+     */
+    public final static String LR1_TABLE_BINARY_PATH = "data/in/LR1_table.bin";
+
+    /**
+     * 由 LR 分析表生成的直接编码的语法分析程序源代码
+     */
+    public final static String GENERATED_PARSER_PATH = "src/cn/edu/hitsz/compiler/parser/GeneratedParser.java";
+
 
     //==================================== 输出文件 ========================================//
     /**